@@ -0,0 +1,73 @@
+package main.java;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for every turn taken, so a recording shows the turns among the garbage
+ * collections and safepoints around them. Lives in its own source set, as it needs a Java with Flight
+ * Recorder events (8u262 and later) to build while the game builds on any Java 8. Metrics looks it up
+ * when it loads and leaves it out where it can't be loaded.
+ */
+@Name("main.java.Turn")
+@Label("Turn")
+@Category("RaceGame")
+@Description("A car moving to a location, and bringing the track up to date")
+public class TurnEvent extends Event {
+
+    /**
+     * The car that moved.
+     */
+    @Label("Car")
+    private int car;
+
+    /**
+     * The location it moved to.
+     */
+    @Label("Location")
+    private int location;
+
+    /**
+     * The number of cars in the race.
+     */
+    @Label("Cars")
+    private int cars;
+
+    /**
+     * The number of locations on the track.
+     */
+    @Label("Locations")
+    private int locations;
+
+    /**
+     * How long the turn took to handle.
+     */
+    @Label("Handled In")
+    @Timespan(Timespan.NANOSECONDS)
+    private long handled;
+
+    /**
+     * Commits an event for a turn, if turn events are being recorded.
+     *
+     * @param car       The car that moved.
+     * @param location  The location it moved to.
+     * @param cars      The number of cars in the race.
+     * @param locations The number of locations on the track.
+     * @param nanos     How long the turn took to handle.
+     */
+    static void emit(int car, int location, int cars, int locations, long nanos) {
+        TurnEvent event = new TurnEvent();
+        if (!event.isEnabled()) return;
+        event.car = car;
+        event.location = location;
+        event.cars = cars;
+        event.locations = locations;
+        event.handled = nanos;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,95 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distance between two locations: asked of the Location nodes, of the LocationState behind them
+ * and of the DistanceMatrix the engine uses. Distances don't depend on the number of cars, so only the
+ * number of locations is varied.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+    /**
+     * The number of locations on the track.
+     */
+    @Param({"5", "1000", "10000", "100000"})
+    public int locations;
+
+    /**
+     * The number of pairs cycled through, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    private Location[] nodes;
+    private LocationState state;
+    private DistanceMatrix matrix;
+    private int[] from, to;
+    private int next;
+
+    /**
+     * Places the locations and picks random pairs of them.
+     */
+    @Setup
+    public void setUp() {
+        double[] x = new double[locations], y = new double[locations];
+        new TrackGenerator(Races.SEED).placeLocations(x, y, Races.radiusFor(locations), Races.SCENE_X, Races.SCENE_Y);
+        state = new LocationState(x, y);
+        nodes = new Location[locations];
+        for (int i = 0; i < locations; i++) nodes[i] = new Location(state, i, Races.radiusFor(locations));
+        matrix = new DistanceMatrix(x, y);
+        Random rand = new Random(Races.SEED);
+        from = new int[PAIRS];
+        to = new int[PAIRS];
+        for (int p = 0; p < PAIRS; p++) {
+            from[p] = rand.nextInt(locations);
+            to[p] = rand.nextInt(locations);
+        }
+    }
+
+    /**
+     * @return The distance between the next pair, from the nodes.
+     */
+    @Benchmark
+    public double locationNodes() {
+        int p = next++ & (PAIRS - 1);
+        return nodes[from[p]].getDistanceToLocation(nodes[to[p]]);
+    }
+
+    /**
+     * @return The distance between the next pair, from the coordinates.
+     */
+    @Benchmark
+    public double locationState() {
+        int p = next++ & (PAIRS - 1);
+        return state.getDistance(from[p], to[p]);
+    }
+
+    /**
+     * @return The distance between the next pair, from the matrix.
+     */
+    @Benchmark
+    public double distanceMatrix() {
+        int p = next++ & (PAIRS - 1);
+        return matrix.get(from[p], to[p]);
+    }
+
+}
@@ -0,0 +1,108 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing legs: the original CarStats.calculateTime, the engine's memoized LegCosts and the batch LegKernel.
+ * Every benchmark prices the same LEGS random legs for every car, and reports the time per leg for all the cars.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LegTimeBenchmark {
+
+    /**
+     * The number of cars, as offered in View.StartPrompt.
+     */
+    @Param({"2", "3", "4", "5", "15"})
+    public int players;
+
+    /**
+     * The number of locations, 0 for the number the game uses for that many players.
+     */
+    @Param({"0", "1000", "10000", "100000"})
+    public int locations;
+
+    /**
+     * The number of legs priced per car.
+     */
+    private static final int LEGS = 1024;
+
+    private RaceEngine engine;
+    private CarStats[] stats;
+    private int[] from, to;
+    private double[] distances, times;
+
+    /**
+     * Sets the race up and picks random legs.
+     */
+    @Setup
+    public void setUp() {
+        int n = Races.locationsFor(players, locations);
+        engine = Races.create(players, new double[n], new double[n]);
+        stats = new CarStats[players];
+        for (int c = 0; c < players; c++) stats[c] = engine.getStats(c);
+        Random rand = new Random(Races.SEED);
+        from = new int[LEGS];
+        to = new int[LEGS];
+        distances = new double[LEGS];
+        for (int k = 0; k < LEGS; k++) {
+            from[k] = rand.nextInt(n);
+            to[k] = rand.nextInt(n);
+            distances[k] = engine.getDistance(from[k], to[k]);
+        }
+        times = new double[LEGS * players];
+    }
+
+    /**
+     * @return The sum of the times, priced one call at a time.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LEGS)
+    public double calculateTime() {
+        double sum = 0;
+        for (CarStats s : stats)
+            for (int k = 0; k < LEGS; k++) sum += s.calculateTime(distances[k]);
+        return sum;
+    }
+
+    /**
+     * @return The sum of the times, looked up through the engine like the drivers do.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LEGS)
+    public double legCosts() {
+        double sum = 0;
+        for (int c = 0; c < players; c++)
+            for (int k = 0; k < LEGS; k++) sum += engine.getLegTime(c, from[k], to[k]);
+        return sum;
+    }
+
+    /**
+     * @return The times, priced all at once.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LEGS)
+    public double[] legKernel() {
+        LegKernel.price(distances, LEGS, engine.getCars(), times);
+        return times;
+    }
+
+}
@@ -0,0 +1,79 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checked after every turn: whether the race is over and who is winning, from the leaderboard and
+ * from a scan of every car's time. The race is played to its end first, so getWinner takes the
+ * leaderboard's answer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaceEndBenchmark {
+
+    /**
+     * The number of cars, as offered in View.StartPrompt.
+     */
+    @Param({"2", "3", "4", "5", "15"})
+    public int players;
+
+    private RaceEngine engine;
+
+    /**
+     * Plays a race to its end, every car driving to the first location it hasn't visited.
+     */
+    @Setup
+    public void setUp() {
+        int n = TrackGenerator.locationsFor(players);
+        engine = Races.create(players, new double[n], new double[n]);
+        while (!engine.isOver()) {
+            int car = engine.getActiveCar(), location = engine.nextUnvisited(car, 0);
+            if (!engine.canMove(car, location)) location = engine.nextUnvisited(car, location + 1);
+            if (location < 0) location = engine.getEnd(car);
+            engine.move(car, location);
+        }
+    }
+
+    /**
+     * @return True.
+     */
+    @Benchmark
+    public boolean isOver() {
+        return engine.isOver();
+    }
+
+    /**
+     * @return The winner, from the leaderboard.
+     */
+    @Benchmark
+    public int getWinner() {
+        return engine.getWinner();
+    }
+
+    /**
+     * @return The winner, from every car's time.
+     */
+    @Benchmark
+    public int scanTimes() {
+        int winner = 0;
+        for (int c = 1; c < engine.getNumCars(); c++) if (engine.getTime(winner) > engine.getTime(c)) winner = c;
+        return winner;
+    }
+
+}
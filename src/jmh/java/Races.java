@@ -0,0 +1,49 @@
+package main.java;
+
+/**
+ * Sets races up for the benchmarks the way the game does, from a fixed seed so every run measures the same race.
+ */
+public class Races {
+
+    /**
+     * The seed every benchmark race is created from.
+     */
+    public static final long SEED = 225;
+
+    /**
+     * The size of the scene races are laid out on, as in Tournament.
+     */
+    public static final double SCENE_X = 1920, SCENE_Y = 1080;
+
+    private Races() {
+    }
+
+    /**
+     * @param players   The number of cars.
+     * @param locations The number of locations, 0 for the number the game uses for that many players.
+     * @return The number of locations.
+     */
+    public static int locationsFor(int players, int locations) {
+        return locations > 0 ? locations : TrackGenerator.locationsFor(players);
+    }
+
+    /**
+     * @param locations The number of locations.
+     * @return The radius of a location, shrunk to fit as CanvasTrack does.
+     */
+    public static double radiusFor(int locations) {
+        return Math.max(2, Math.min(64, Math.sqrt((SCENE_X - 300) * SCENE_Y / locations) / 4));
+    }
+
+    /**
+     * @param players   The number of cars.
+     * @param locationX Receives the x coordinate of each location. Its length is the number of locations.
+     * @param locationY Receives the y coordinate of each location.
+     * @return The race, ready for the first turn.
+     */
+    public static RaceEngine create(int players, double[] locationX, double[] locationY) {
+        return new TrackGenerator(SEED).createRace(players, locationX, locationY, radiusFor(locationX.length),
+                SCENE_X, SCENE_Y, Tournament.STAT_TOTAL);
+    }
+
+}
@@ -0,0 +1,79 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes on a road network between random junctions: the length of the shortest route, and the route
+ * itself as drawn for a trail. Setting up the contraction hierarchy is left out, it happens once per track.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoadBenchmark {
+
+    /**
+     * About how many nodes the roads have.
+     */
+    @Param({"10000", "50000", "200000"})
+    public int nodes;
+
+    /**
+     * The number of pairs cycled through, a power of two.
+     */
+    private static final int PAIRS = 1024;
+
+    private RoadRouter router;
+    private int[] from, to;
+    private int next;
+
+    /**
+     * Lays out the roads, contracts them and picks random pairs of junctions.
+     */
+    @Setup
+    public void setUp() {
+        Random rand = new Random(Races.SEED);
+        RoadGraph roads = RoadGraph.generate(rand, nodes, 64, 64, Races.SCENE_X - 364, Races.SCENE_Y - 64);
+        router = new RoadRouter(roads.getHierarchy());
+        from = new int[PAIRS];
+        to = new int[PAIRS];
+        for (int p = 0; p < PAIRS; p++) {
+            from[p] = rand.nextInt(roads.size());
+            to[p] = rand.nextInt(roads.size());
+        }
+    }
+
+    /**
+     * @return The length of the shortest route between the next pair.
+     */
+    @Benchmark
+    public double distance() {
+        int p = next++ & (PAIRS - 1);
+        return router.distance(from[p], to[p]);
+    }
+
+    /**
+     * @return The shortest route between the next pair.
+     */
+    @Benchmark
+    public int[] route() {
+        int p = next++ & (PAIRS - 1);
+        return router.route(from[p], to[p]);
+    }
+
+}
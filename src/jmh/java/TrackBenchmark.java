@@ -0,0 +1,72 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting a race up: placing the locations alone, and the whole of createRace, which also builds the
+ * DistanceMatrix and the cars. Large tracks take a good part of a second, so there are fewer iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class TrackBenchmark {
+
+    /**
+     * The number of cars, as offered in View.StartPrompt.
+     */
+    @Param({"2", "3", "4", "5", "15"})
+    public int players;
+
+    /**
+     * The number of locations, 0 for the number the game uses for that many players.
+     */
+    @Param({"0", "1000", "10000", "100000"})
+    public int locations;
+
+    private double[] x, y;
+    private long seed;
+
+    /**
+     * Makes room for the locations.
+     */
+    @Setup
+    public void setUp() {
+        int n = Races.locationsFor(players, locations);
+        x = new double[n];
+        y = new double[n];
+    }
+
+    /**
+     * @return The locations, placed from the next seed.
+     */
+    @Benchmark
+    public double[] placeLocations() {
+        new TrackGenerator(seed++).placeLocations(x, y, Races.radiusFor(x.length), Races.SCENE_X, Races.SCENE_Y);
+        return x;
+    }
+
+    /**
+     * @return A race, set up from the next seed.
+     */
+    @Benchmark
+    public RaceEngine createRace() {
+        return new TrackGenerator(seed++).createRace(players, x, y, Races.radiusFor(x.length),
+                Races.SCENE_X, Races.SCENE_Y, Tournament.STAT_TOTAL);
+    }
+
+}
@@ -0,0 +1,137 @@
+package main.java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One whole turn without a scene: the move itself, bringing the locations up to date for the next car
+ * and ranking the cars for the stats panel. The locations are either all looked at, as Track does, or
+ * only those that can have changed, as CanvasTrack does. Every car drives its own random route, and
+ * a finished race is put back to its start from a saved state, which allocates nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnBenchmark {
+
+    /**
+     * The number of cars, as offered in View.StartPrompt.
+     */
+    @Param({"2", "3", "4", "5", "15"})
+    public int players;
+
+    /**
+     * The number of locations, 0 for the number the game uses for that many players.
+     */
+    @Param({"0", "1000", "10000", "100000"})
+    public int locations;
+
+    private RaceEngine engine;
+    private LocationState state;
+    private ByteBuffer start;
+
+    /**
+     * The location of every move of the race, in order: move m is made by car m % players.
+     */
+    private int[] moves;
+    private int next;
+
+    private int[] standings;
+
+    /**
+     * Sets the race up and picks every car's route.
+     */
+    @Setup
+    public void setUp() {
+        int n = Races.locationsFor(players, locations);
+        double[] x = new double[n], y = new double[n];
+        engine = Races.create(players, x, y);
+        state = new LocationState(x, y);
+        start = ByteBuffer.allocate(engine.getStateBytes());
+        engine.writeState(start);
+        standings = new int[players];
+
+        Random rand = new Random(Races.SEED);
+        int legs = n - 1;
+        moves = new int[legs * players];
+        int[] route = new int[n];
+        for (int c = 0; c < players; c++) {
+            int k = 0;
+            for (int i = 0; i < n; i++) if (i != engine.getStart(c) && i != engine.getEnd(c)) route[k++] = i;
+            for (int i = k - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1), swap = route[i];
+                route[i] = route[j];
+                route[j] = swap;
+            }
+            route[k] = engine.getEnd(c);
+            for (int leg = 0; leg < legs; leg++) moves[leg * players + c] = route[leg];
+        }
+    }
+
+    /**
+     * @return The leader after the turn, with every location looked at.
+     */
+    @Benchmark
+    public int everyLocation() {
+        int car = move();
+        boolean endAvailable = engine.isEndAvailable(car);
+        for (int i = 0; i < state.size(); i++) {
+            state.setActive(i, !engine.isVisited(car, i));
+            if (i == engine.getEnd(car)) state.setActive(i, endAvailable);
+        }
+        return engine.getLeaderboard().getStandings(standings);
+    }
+
+    /**
+     * @return The leader after the turn, with only the locations that can have changed looked at.
+     */
+    @Benchmark
+    public int changedLocations() {
+        int moved = engine.getActiveCar();
+        int car = move();
+        for (int w = 0; w < engine.getWordCount(); w++) {
+            long changed = engine.getVisitedWord(moved, w) ^ engine.getVisitedWord(car, w);
+            while (changed != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(changed);
+                state.setActive(i, !engine.isVisited(car, i));
+                changed &= changed - 1;
+            }
+        }
+        state.setActive(engine.getCurrent(moved), !engine.isVisited(car, engine.getCurrent(moved)));
+        state.setActive(engine.getEnd(moved), !engine.isVisited(car, engine.getEnd(moved)));
+        state.setActive(engine.getEnd(car), engine.isEndAvailable(car));
+        return engine.getLeaderboard().getStandings(standings);
+    }
+
+    /**
+     * Makes the next move, starting the race again first if it is over.
+     *
+     * @return The car whose turn it is now.
+     */
+    private int move() {
+        if (next == moves.length) {
+            start.rewind();
+            engine.readState(start);
+            next = 0;
+        }
+        engine.move(engine.getActiveCar(), moves[next++]);
+        return engine.getActiveCar();
+    }
+
+}
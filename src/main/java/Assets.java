@@ -0,0 +1,69 @@
+package main.java;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.ImagePattern;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes each image in the images folder once and hands out shared copies.
+ * Every car, location and end-of-race effect painted with the same image shares one Image and one ImagePattern.
+ */
+public class Assets {
+
+    /**
+     * Every image the game uses.
+     */
+    private static final String[] NAMES = {
+            "bug.png", "blue.png", "black.png", "yellow.png", "orange.png", "red.png", "silver.png",
+            "greengif.gif", "redgif.gif"
+    };
+
+    /**
+     * Decoded images, by file name.
+     */
+    private static final Map<String, Image> images = new ConcurrentHashMap<>();
+
+    /**
+     * Fills painted with the decoded images, by file name.
+     */
+    private static final Map<String, ImagePattern> patterns = new ConcurrentHashMap<>();
+
+    private Assets() {
+    }
+
+    /**
+     * Starts decoding every image in the background. Called once at startup, so the first car
+     * or location that needs an image does not wait for it.
+     */
+    public static void preload() {
+        for (String name : NAMES) images.computeIfAbsent(name, n -> new Image(url(n), true));
+    }
+
+    /**
+     * @param name The file name within the images folder.
+     * @return The decoded image, decoded now if it was not preloaded.
+     */
+    public static Image image(String name) {
+        return images.computeIfAbsent(name, n -> new Image(url(n)));
+    }
+
+    /**
+     * @param name The file name within the images folder.
+     * @return A fill painted with the image, shared by everything that uses it.
+     */
+    public static ImagePattern pattern(String name) {
+        return patterns.computeIfAbsent(name, n -> new ImagePattern(image(n)));
+    }
+
+    /**
+     * @return The location of an image within the resources.
+     */
+    private static String url(String name) {
+        URL resource = Assets.class.getResource("/main/resources/images/" + name);
+        return resource.toString();
+    }
+
+}
@@ -0,0 +1,70 @@
+package main.java;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs drivers on a pool of worker threads so the JavaFX application thread never waits for them.
+ * Each plan works on its own copy of the race and can be cancelled.
+ */
+public class BotPlanner {
+
+    /**
+     * The worker threads. Daemons, so they never keep the program alive.
+     */
+    private ExecutorService workers;
+
+    /**
+     * The plan currently running, if any.
+     */
+    private Future<?> pending;
+
+    /**
+     * Starts a worker per processor.
+     */
+    public BotPlanner() {
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "bot-planner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Asks a driver where a car should go next. Any plan still running is cancelled.
+     *
+     * @param engine       The race. Copied before the driver sees it.
+     * @param car          The car to drive.
+     * @param driver       The driver.
+     * @param budgetMillis How long the driver may think for.
+     * @param onChosen     Receives the chosen location on a worker thread, unless the plan was cancelled.
+     */
+    public synchronized void plan(RaceEngine engine, int car, Driver driver, long budgetMillis, IntConsumer onChosen) {
+        cancel();
+        RaceEngine snapshot = new RaceEngine(engine);
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        pending = workers.submit(() -> {
+            int location = driver.chooseNext(snapshot, car, deadline);
+            if (!Thread.currentThread().isInterrupted()) onChosen.accept(location);
+        });
+    }
+
+    /**
+     * Cancels the plan currently running, if any.
+     */
+    public synchronized void cancel() {
+        if (pending != null) pending.cancel(true);
+        pending = null;
+    }
+
+    /**
+     * Cancels any plan and stops the workers.
+     */
+    public synchronized void shutdown() {
+        cancel();
+        workers.shutdownNow();
+    }
+
+}
@@ -0,0 +1,870 @@
+package main.java;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Group;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Slider;
+import javafx.scene.effect.Glow;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * An alternative to Track for big tracks. Instead of a node per location, car and trail, everything is
+ * drawn onto stacked canvases: the roads, if the track has any, at the bottom, then locations, trails
+ * and cars on top.
+ * Clicks are matched to locations through a SpatialIndex, and each turn only repaints the locations
+ * and cars that look different afterwards.
+ * As on a Track, a race is played on a game-logic thread: it moves the cars, works out which locations
+ * look different and the route of each leg, and publishes them for the JavaFX application thread to draw
+ * in batches. A replay is played on the JavaFX application thread, which also restores its keyframes
+ * and takes the snapshots of its trails.
+ */
+public class CanvasTrack extends Group {
+
+    /**
+     * How a location is drawn once the race is over, next to the looks of TurnDiff.
+     */
+    private static final byte OVER = 4;
+
+    /**
+     * The trail color of each car, as in Track.
+     */
+    private static final Color[] COLORS = {Color.RED, Color.BLUE, Color.BLACK, Color.YELLOW, Color.ORANGE};
+
+    /**
+     * The image of each car, as in Car.
+     */
+    private static final String[] CAR_IMAGES = {"bug.png", "blue.png", "black.png", "yellow.png", "orange.png"};
+
+    /**
+     * How many moves a replay plays per second at 1x.
+     */
+    private static final double MOVES_PER_SECOND = 2;
+
+    /**
+     * How much memory the trail snapshots of a replay may take. A snapshot of a 1920 by 1080 scene takes 8 MB.
+     */
+    private static final long SNAPSHOT_BYTES = 96L << 20;
+
+    /**
+     * The rules of the race. Only used on the game-logic thread once a race is set up, and only on the
+     * JavaFX application thread when a replay is shown.
+     */
+    private RaceEngine engine;
+
+    /**
+     * The center of every location.
+     */
+    private double[] locationX, locationY;
+
+    /**
+     * The radius of a location and the width of a car.
+     */
+    private double radius, carSize;
+
+    /**
+     * Finds the location under a click.
+     */
+    private SpatialIndex index;
+
+    /**
+     * The three layers, bottom to top.
+     */
+    private Canvas locationLayer, trailLayer, carLayer;
+
+    /**
+     * The roads legs are driven along, null if they're driven in straight lines.
+     */
+    private RoadGraph roads;
+
+    /**
+     * Finds the route of each leg on the roads.
+     */
+    private RoadRouter router;
+
+    /**
+     * The junction each location is on.
+     */
+    private int[] junctions;
+
+    /**
+     * How each location is currently drawn.
+     */
+    private byte[] drawn;
+
+    /**
+     * Locations that have to be repainted, and how many there are.
+     */
+    private int[] dirty;
+    private int numDirty;
+
+    /**
+     * True for cars that have had a turn, only those are drawn.
+     */
+    private boolean[] shown;
+
+    /**
+     * Where each car is drawn, and the car drawn as having the turn. Only used on the JavaFX application thread.
+     */
+    private int[] carAt;
+    private int activeCar;
+
+    /**
+     * How each location was last published to look, and scratch space for the locations that changed.
+     * Only used on the thread that plays the race.
+     */
+    private byte[] published, looks;
+    private int[] changed;
+
+    /**
+     * The game-logic thread, which applies every turn of a race to the engine one at a time, records the
+     * race and plans the turns of computer controlled cars.
+     */
+    private GameLogic logic;
+
+    /**
+     * Hands each turn to the JavaFX application thread.
+     */
+    private FxPublisher<Turn> publisher;
+
+    /**
+     * True once the track has been left, after which turns are ignored.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Shows whose turn it is.
+     */
+    private Text activeCarLabel;
+
+    /**
+     * How the race was set up.
+     */
+    private ReplayLog.Header header;
+
+    /**
+     * The replay being shown, null when the race is played.
+     */
+    private ReplayIndex replay;
+
+    /**
+     * The number of moves of the replay shown so far.
+     */
+    private long turn;
+
+    /**
+     * Pictures of the trails every snapshotStride moves, taken the first time the replay gets there, so
+     * jumping back only redraws the trails since the one before. The first is the empty canvas and left null.
+     */
+    private WritableImage[] snapshots;
+    private long snapshotStride;
+
+    /**
+     * Plays the replay forward, and how fast.
+     */
+    private AnimationTimer player;
+    private double speed = 1;
+
+    /**
+     * The moves due but not yet played, and when the last frame was.
+     */
+    private double pending;
+    private long lastFrame;
+
+    /**
+     * Shows and picks the turn of the replay.
+     */
+    private Slider turnSlider;
+    private Text turnLabel;
+
+    /**
+     * True while the slider is moved along with the replay rather than by the user.
+     */
+    private boolean following;
+
+    /**
+     * Announces the winner once the race is over, null until then.
+     */
+    private Text winner;
+
+    /**
+     * Lays out the track from a random seed and draws it.
+     *
+     * @param numPlayers   The number of cars.
+     * @param numLocations The number of locations.
+     * @param offset       The largest radius of a location, shrunk to fit many locations.
+     * @param sceneX       The width of the main Screen from View.
+     * @param sceneY       The height of the main Screen from View.
+     */
+    public void setTrack(int numPlayers, int numLocations, double offset, double sceneX, double sceneY) {
+        setTrack(numPlayers, numLocations, offset, sceneX, sceneY, new Random().nextLong());
+    }
+
+    /**
+     * Lays out the track and draws it. The same seed always gives the same race.
+     *
+     * @param numPlayers   The number of cars.
+     * @param numLocations The number of locations.
+     * @param offset       The largest radius of a location, shrunk to fit many locations.
+     * @param sceneX       The width of the main Screen from View.
+     * @param sceneY       The height of the main Screen from View.
+     * @param seed         The seed every random choice of the race is drawn from.
+     */
+    public void setTrack(int numPlayers, int numLocations, double offset, double sceneX, double sceneY, long seed) {
+        setTrack(numPlayers, numLocations, offset, sceneX, sceneY, seed, 0);
+    }
+
+    /**
+     * Lays out the track on a road network and draws it. Legs follow the shortest route along the roads.
+     * Contracting and routing big road networks takes seconds, set a Setup up on another thread for those.
+     *
+     * @param numPlayers   The number of cars.
+     * @param numLocations The number of locations, at most RoadGraph.MAX_LOCATIONS with roads.
+     * @param offset       The largest radius of a location, shrunk to fit many locations.
+     * @param sceneX       The width of the main Screen from View.
+     * @param sceneY       The height of the main Screen from View.
+     * @param seed         The seed every random choice of the race is drawn from.
+     * @param roadNodes    About how many junctions and bends the roads have, 0 to drive in straight lines.
+     */
+    public void setTrack(int numPlayers, int numLocations, double offset, double sceneX, double sceneY, long seed,
+                         int roadNodes) {
+        setTrack(new Setup(numPlayers, numLocations, offset, sceneX, sceneY, seed, roadNodes));
+    }
+
+    /**
+     * Draws a race already set up.
+     *
+     * @param setup The race.
+     */
+    public void setTrack(Setup setup) {
+        layOut(setup);
+    }
+
+    /**
+     * A race set up and ready to be drawn: the roads contracted, the locations placed on them and the
+     * distances between them worked out. Takes no part of the scene, so it can be made on any thread.
+     */
+    public static class Setup {
+
+        /**
+         * When setting the race up started, so Metrics.TRACK still times it from start to on screen.
+         */
+        private final long started = System.nanoTime();
+
+        /**
+         * The race and everything worked out for it, taken over by the track.
+         */
+        private final ReplayLog.Header header;
+        private final double[] locationX, locationY;
+        private final RoadGraph roads;
+        private final int[] junctions;
+        private final RaceEngine engine;
+        private final RoadRouter router;
+
+        /**
+         * Sets up a new race, with locations shrunk to fit the scene.
+         *
+         * @param numPlayers   The number of cars.
+         * @param numLocations The number of locations, at most RoadGraph.MAX_LOCATIONS with roads.
+         * @param offset       The largest radius of a location.
+         * @param sceneX       The width of the main Screen from View.
+         * @param sceneY       The height of the main Screen from View.
+         * @param seed         The seed every random choice of the race is drawn from.
+         * @param roadNodes    About how many junctions and bends the roads have, 0 to drive in straight lines.
+         */
+        public Setup(int numPlayers, int numLocations, double offset, double sceneX, double sceneY, long seed,
+                     int roadNodes) {
+            this(new ReplayLog.Header(seed, Tournament.STAT_TOTAL, numPlayers, numLocations,
+                    Math.max(2, Math.min(offset, Math.sqrt((sceneX - 300) * sceneY / numLocations) / 4)),
+                    sceneX, sceneY, roadNodes));
+        }
+
+        /**
+         * Sets a race up again, exactly as it was before its first turn.
+         *
+         * @param header How the race was set up. Its offset is the radius of a location.
+         */
+        public Setup(ReplayLog.Header header) {
+            this.header = header;
+            locationX = new double[header.getNumLocations()];
+            locationY = new double[header.getNumLocations()];
+            roads = header.createRoads();
+            junctions = roads == null ? null : new int[header.getNumLocations()];
+            engine = header.createRace(locationX, locationY, roads, junctions);
+            router = roads == null ? null : new RoadRouter(roads.getHierarchy());
+        }
+
+        /**
+         * @return The race before its first turn, for indexing a replay of it. Copy it rather than move it.
+         */
+        public RaceEngine getEngine() {
+            return engine;
+        }
+    }
+
+    /**
+     * Takes over a race that is set up and draws it.
+     */
+    private void layOut(Setup setup) {
+        header = setup.header;
+        int numPlayers = header.getNumPlayers(), numLocations = header.getNumLocations();
+        double sceneX = header.getSceneX(), sceneY = header.getSceneY();
+        radius = header.getOffset();
+        carSize = radius + 10;
+        locationX = setup.locationX;
+        locationY = setup.locationY;
+        roads = setup.roads;
+        junctions = setup.junctions;
+        engine = setup.engine;
+        router = setup.router;
+        index = new SpatialIndex(locationX, locationY, radius * 2);
+        shown = new boolean[numPlayers];
+        carAt = new int[numPlayers];
+        for (int c = 0; c < numPlayers; c++) carAt[c] = engine.getCurrent(c);
+        activeCar = engine.getActiveCar();
+        drawn = new byte[numLocations];
+        dirty = new int[numLocations];
+        published = new byte[numLocations];
+        looks = new byte[numLocations];
+        changed = new int[numLocations];
+
+        locationLayer = new Canvas(sceneX, sceneY);
+        trailLayer = new Canvas(sceneX, sceneY);
+        carLayer = new Canvas(sceneX, sceneY);
+        carLayer.setOnMouseClicked(mouseEvent -> {
+            int car = activeCar;
+            if (replay != null || winner != null || logic.isBot(car)) return;
+            int location = index.nearest(mouseEvent.getX(), mouseEvent.getY(), radius);
+            long start = System.nanoTime();
+            if (location >= 0) logic.later(() -> takeTurn(car, location, start));
+        });
+        activeCarLabel = new Text(sceneX - 280, 50, "");
+        activeCarLabel.setFill(Color.DARKGREEN);
+        activeCarLabel.setFont(Font.font(30));
+        this.getChildren().addAll(locationLayer, trailLayer, carLayer, activeCarLabel);
+        if (roads != null) this.getChildren().add(0, drawRoads(sceneX, sceneY));
+
+        for (int i = 0; i < numLocations; i++) drawn[i] = published[i] = stateFor(activeCar, i);
+        repaintAllLocations();
+        showCar(activeCar);
+        publisher = new FxPublisher<>(this::apply);
+        logic = new GameLogic(engine, header,
+                (car, location, start) -> logic.later(() -> takeTurn(car, location, start)));
+        Metrics.TRACK.recordSince(setup.started);
+    }
+
+    /**
+     * @return How the location should be drawn while the car has the turn.
+     */
+    private byte stateFor(int car, int location) {
+        return engine.isOver() ? OVER : TurnDiff.lookFor(engine, car, location);
+    }
+
+    /**
+     * A move and everything needed to draw it: what changed, and the route of the leg on the roads.
+     * Never changes once made, so it can be read on any thread.
+     */
+    private static final class Turn {
+
+        /**
+         * What the move changed.
+         */
+        private final TurnDiff diff;
+
+        /**
+         * The route the car drove, as from route, null if it drove in a straight line.
+         */
+        private final double[][] route;
+
+        /**
+         * @param diff  What the move changed.
+         * @param route The route the car drove, null for a straight line.
+         */
+        private Turn(TurnDiff diff, double[][] route) {
+            this.diff = diff;
+            this.route = route;
+        }
+    }
+
+    /**
+     * Moves a car, if the engine allows it, and publishes what changed. Runs on the game-logic thread.
+     *
+     * @param car      The car that wants to move.
+     * @param location The location it wants to move to.
+     * @param start    When the turn was asked for, from System.nanoTime().
+     */
+    private void takeTurn(int car, int location, long start) {
+        if (stopped) return;
+        Turn turn = play(car, location);
+        if (turn == null) return;
+        Metrics.turn(car, location, engine.getNumCars(), engine.getNumLocations(), start);
+        publisher.publish(turn);
+        logic.planBot();
+    }
+
+    /**
+     * Moves a car, if it has the turn and the engine allows it, and works out what the move changed.
+     * Runs on the thread that plays the race.
+     *
+     * @param car      The car that wants to move.
+     * @param location The location it wants to move to.
+     * @return The move, null if it wasn't made.
+     */
+    private Turn play(int car, int location) {
+        if (engine.getActiveCar() != car) return null;
+        int from = engine.getCurrent(car);
+        if (!engine.move(car, location)) return null;
+        logic.drainLog();
+
+        // Only locations visited by exactly one of the two cars, and their ends, can look different.
+        int next = engine.getActiveCar(), count = 0;
+        for (int w = 0; w < engine.getWordCount(); w++) {
+            long bits = engine.getVisitedWord(car, w) ^ engine.getVisitedWord(next, w);
+            while (bits != 0) {
+                count = refresh(next, (w << 6) + Long.numberOfTrailingZeros(bits), count);
+                bits &= bits - 1;
+            }
+        }
+        count = refresh(next, location, count);
+        count = refresh(next, engine.getEnd(car), count);
+        count = refresh(next, engine.getEnd(next), count);
+        TurnDiff diff = new TurnDiff(engine, car, from, location, changed, looks, count);
+        if (engine.isOver()) logic.closeLog();
+        return new Turn(diff, route(from, location));
+    }
+
+    /**
+     * Notes a location if it should look different to the car than it was last published to.
+     *
+     * @return The number of locations noted.
+     */
+    private int refresh(int car, int location, int count) {
+        byte look = stateFor(car, location);
+        if (published[location] == look) return count;
+        published[location] = look;
+        changed[count] = location;
+        looks[count] = look;
+        return count + 1;
+    }
+
+    /**
+     * Draws a batch of turns. Every leg and car is drawn, but the locations are only repainted once,
+     * for the last turn.
+     *
+     * @param batch The turns, in the order they were taken.
+     */
+    private void apply(List<Turn> batch) {
+        if (stopped) return;
+        for (Turn turn : batch) draw(turn);
+        finish(batch.get(batch.size() - 1).diff);
+    }
+
+    /**
+     * Draws a move: the leg onto the trails, the car where it arrived, and notes the locations to repaint.
+     */
+    private void draw(Turn turn) {
+        long start = System.nanoTime();
+        TurnDiff diff = turn.diff;
+        int car = diff.getCar();
+        GraphicsContext trails = trailLayer.getGraphicsContext2D();
+        trails.setStroke(COLORS[car % COLORS.length]);
+        drawLeg(trails, diff.getFrom(), diff.getTo(), turn.route);
+        carAt[car] = diff.getTo();
+        moveCar(car, diff.getFrom(), diff.getTo());
+        for (int k = 0; k < diff.getChangedCount(); k++) {
+            int location = diff.getChanged(k);
+            if (drawn[location] == diff.getLook(k)) continue;
+            drawn[location] = diff.getLook(k);
+            // A location can change back and forth within a batch. Once dirty is full everything is repainted.
+            if (numDirty < dirty.length) dirty[numDirty++] = location;
+        }
+        if (replay == null) Metrics.ANIMATION.recordSince(start);
+    }
+
+    /**
+     * Repaints the locations noted, shows the car that has the turn now and, once the race is over, the winner.
+     *
+     * @param last The last turn drawn.
+     */
+    private void finish(TurnDiff last) {
+        long start = System.nanoTime();
+        repaintDirtyLocations();
+        activeCar = last.getNext();
+        showCar(activeCar);
+        if (replay == null) Metrics.STATS.recordSince(start);
+        if (last.getWinner() >= 0) endRace(last.getWinner());
+    }
+
+    /**
+     * @return The corners of the route of a leg on the roads, their x then their y, null if the track has none.
+     */
+    private double[][] route(int from, int to) {
+        if (router == null) return null;
+        int[] route = router.route(junctions[from], junctions[to]);
+        double[][] corners = new double[2][route.length];
+        for (int k = 0; k < route.length; k++) {
+            corners[0][k] = roads.getX(route[k]);
+            corners[1][k] = roads.getY(route[k]);
+        }
+        return corners;
+    }
+
+    /**
+     * Draws a car's trail from one location to another, along its route if it has one.
+     */
+    private void drawLeg(GraphicsContext trails, int from, int to, double[][] route) {
+        if (route == null) trails.strokeLine(locationX[from], locationY[from], locationX[to], locationY[to]);
+        else trails.strokePolyline(route[0], route[1], route[0].length);
+    }
+
+    /**
+     * @return A canvas with every road drawn on it as one path.
+     */
+    private Canvas drawRoads(double sceneX, double sceneY) {
+        Canvas roadLayer = new Canvas(sceneX, sceneY);
+        GraphicsContext g = roadLayer.getGraphicsContext2D();
+        g.setStroke(Color.LIGHTGRAY);
+        g.setLineWidth(1);
+        g.beginPath();
+        for (int v = 0; v < roads.size(); v++)
+            for (int r = roads.getFirst(v); r < roads.getEnd(v); r++) {
+                int w = roads.getTarget(r);
+                if (w < v) continue;
+                g.moveTo(roads.getX(v), roads.getY(v));
+                g.lineTo(roads.getX(w), roads.getY(w));
+            }
+        g.stroke();
+        return roadLayer;
+    }
+
+    /**
+     * Paints every location from scratch.
+     */
+    private void repaintAllLocations() {
+        GraphicsContext g = locationLayer.getGraphicsContext2D();
+        g.clearRect(0, 0, locationLayer.getWidth(), locationLayer.getHeight());
+        for (int i = 0; i < locationX.length; i++) drawLocation(g, i);
+        numDirty = 0;
+    }
+
+    /**
+     * Clears the area of each queued location and paints whatever locations overlap it.
+     */
+    private void repaintDirtyLocations() {
+        if (numDirty > locationX.length / 2) {
+            repaintAllLocations();
+            return;
+        }
+        GraphicsContext g = locationLayer.getGraphicsContext2D();
+        for (int k = 0; k < numDirty; k++) {
+            int i = dirty[k];
+            double x = locationX[i], y = locationY[i], r = radius + 1;
+            g.clearRect(x - r, y - r, 2 * r, 2 * r);
+            index.forEachIn(x - 3 * r, y - 3 * r, x + 3 * r, y + 3 * r, other -> drawLocation(g, other));
+        }
+        numDirty = 0;
+    }
+
+    /**
+     * Paints one location and its number.
+     */
+    private void drawLocation(GraphicsContext g, int i) {
+        Paint fill;
+        switch (drawn[i]) {
+            case TurnDiff.VISITED: fill = Color.CRIMSON; break;
+            case TurnDiff.END: fill = Color.ORANGE; break;
+            case TurnDiff.LAST: fill = Assets.pattern("greengif.gif"); break;
+            case OVER: fill = Assets.pattern("redgif.gif"); break;
+            default: fill = Color.LIMEGREEN;
+        }
+        g.setFill(fill);
+        g.fillOval(locationX[i] - radius, locationY[i] - radius, radius * 2, radius * 2);
+        if (radius >= 8) {
+            g.setFill(Color.BLACK);
+            g.fillText(Integer.toString(i), locationX[i], locationY[i]);
+        }
+    }
+
+    /**
+     * Makes a car visible once it has had a turn, and shows it as the active car.
+     */
+    private void showCar(int car) {
+        activeCarLabel.setText("Active Car:\t" + (car + 1));
+        if (shown[car]) return;
+        shown[car] = true;
+        repaintCars(locationX[carAt[car]] - radius, locationY[carAt[car]] - radius, carSize);
+    }
+
+    /**
+     * Repaints the areas a car left and arrived at.
+     */
+    private void moveCar(int car, int from, int to) {
+        repaintCars(locationX[from] - radius, locationY[from] - radius, carSize);
+        repaintCars(locationX[to] - radius, locationY[to] - radius, carSize);
+    }
+
+    /**
+     * Clears a square of the car layer and paints every visible car overlapping it.
+     */
+    private void repaintCars(double x, double y, double size) {
+        GraphicsContext g = carLayer.getGraphicsContext2D();
+        g.clearRect(x, y, size, size);
+        for (int c = 0; c < shown.length; c++) {
+            if (!shown[c]) continue;
+            double cx = locationX[carAt[c]] - radius, cy = locationY[carAt[c]] - radius;
+            if (cx < x + size && cx + carSize > x && cy < y + size && cy + carSize > y)
+                g.drawImage(Assets.image(CAR_IMAGES[c % CAR_IMAGES.length]), cx, cy, carSize, carSize);
+        }
+    }
+
+    /**
+     * Paints every location as finished, shows every car and announces the winner.
+     *
+     * @param car The car that won.
+     */
+    private void endRace(int car) {
+        if (winner != null) return;
+        for (int i = 0; i < drawn.length; i++) drawn[i] = OVER;
+        repaintAllLocations();
+        for (int c = 0; c < shown.length; c++) {
+            shown[c] = true;
+            repaintCars(locationX[carAt[c]] - radius, locationY[carAt[c]] - radius, carSize);
+        }
+        winner = new Text("Car #" + car + "WINS!!");
+        winner.setFont(Font.font(50));
+        winner.setFill(Color.GREEN);
+        winner.setEffect(new Glow());
+        winner.setTextAlignment(TextAlignment.CENTER);
+        winner.setTranslateY(100);
+        winner.setTranslateX(200);
+        this.getChildren().add(winner);
+    }
+
+    /**
+     * Shows a recorded race instead of playing one, with controls to play it at 1x to 100x and to jump
+     * to any turn. Jumping restores the nearest keyframe, so it takes at most ReplayIndex.INTERVAL moves.
+     *
+     * @param index The keyframes of the recorded race. Closed when the track is left.
+     */
+    public void setReplay(ReplayIndex index) {
+        setReplay(index, new Setup(index.getHeader()));
+    }
+
+    /**
+     * Shows a recorded race whose race is already set up.
+     *
+     * @param index The keyframes of the recorded race. Closed when the track is left.
+     * @param setup The race, set up from the header of the index.
+     */
+    public void setReplay(ReplayIndex index, Setup setup) {
+        ReplayLog.Header h = index.getHeader();
+        layOut(setup);
+        replay = index;
+        long keyframes = replay.getMoves() / ReplayIndex.INTERVAL + 1;
+        long fit = Math.max(1, SNAPSHOT_BYTES / (4 * (long) Math.ceil(h.getSceneX()) * (long) Math.ceil(h.getSceneY())));
+        snapshotStride = ReplayIndex.INTERVAL * ((keyframes + fit - 1) / fit);
+        snapshots = new WritableImage[(int) (replay.getMoves() / snapshotStride) + 1];
+
+        Button play = new Button("Play");
+        play.setOnAction(e -> {
+            if (lastFrame < 0) pause(play);
+            else {
+                if (turn == replay.getMoves()) seek(0);
+                lastFrame = 0;
+                pending = 0;
+                player.start();
+                play.setText("Pause");
+            }
+        });
+        ComboBox<String> speedBox = new ComboBox<>();
+        speedBox.getItems().addAll("1x", "2x", "5x", "10x", "25x", "50x", "100x");
+        speedBox.setValue("1x");
+        speedBox.setOnAction(e -> speed = Integer.parseInt(speedBox.getValue().replace("x", "")));
+        turnSlider = new Slider(0, replay.getMoves(), 0);
+        turnSlider.setPrefWidth(260);
+        turnSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (!following) seek(Math.round(newValue.doubleValue()));
+        });
+        turnLabel = new Text();
+        VBox controls = new VBox(5, new HBox(5, play, speedBox), turnSlider, turnLabel);
+        controls.setLayoutX(h.getSceneX() - 280);
+        controls.setLayoutY(80);
+        this.getChildren().add(controls);
+
+        player = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (lastFrame > 0) pending = Math.min(pending + (now - lastFrame) / 1e9 * MOVES_PER_SECOND * speed, 10 * speed);
+                lastFrame = now;
+                for (; pending >= 1 && turn < replay.getMoves(); pending--) step();
+                if (turn == replay.getMoves()) pause(play);
+            }
+        };
+        pause(play);
+        seek(0);
+    }
+
+    /**
+     * Stops playing the replay.
+     */
+    private void pause(Button play) {
+        player.stop();
+        lastFrame = -1;
+        play.setText("Play");
+    }
+
+    /**
+     * Plays and draws the next move of the replay the way a turn is taken, here on the JavaFX application thread.
+     */
+    private void step() {
+        try {
+            int location = replay.next();
+            if (location < 0) return;
+            Turn move = play(engine.getActiveCar(), location);
+            if (move != null) {
+                draw(move);
+                finish(move.diff);
+            }
+            keepTrails(++turn);
+        } catch (IOException e) {
+            e.printStackTrace();
+            turn = replay.getMoves();
+        }
+        showTurn();
+    }
+
+    /**
+     * Shows the replay as it was after a number of moves: restores the race, redraws the trails that led
+     * there and repaints every location and car. The trails are drawn on from those already shown when
+     * moving forward, and from the last snapshot before the turn when moving back, so at most
+     * snapshotStride legs are redrawn going back.
+     *
+     * @param to The number of moves.
+     */
+    private void seek(long to) {
+        int n = engine.getNumCars();
+        GraphicsContext trails = trailLayer.getGraphicsContext2D();
+        int s = (int) (to / snapshotStride);
+        while (s > 0 && snapshots[s] == null) s--;
+        long from = s * snapshotStride;
+        if (turn > to || turn < from) {
+            trails.clearRect(0, 0, trailLayer.getWidth(), trailLayer.getHeight());
+            if (s > 0) trails.drawImage(snapshots[s], 0, 0);
+        } else from = turn;
+        try {
+            replay.seek(engine, from);
+            int[] at = new int[n];
+            for (int c = 0; c < n; c++) at[c] = engine.getCurrent(c);
+            // Turns go round the cars in order, so move m is always made by car m % n.
+            replay.forEachMove(from, to, (m, location) -> {
+                int c = (int) (m % n);
+                trails.setStroke(COLORS[c % COLORS.length]);
+                drawLeg(trails, at[c], location, route(at[c], location));
+                at[c] = location;
+                keepTrails(m + 1);
+            });
+            replay.seek(engine, to);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        turn = to;
+        if (winner != null) this.getChildren().remove(winner);
+        winner = null;
+        activeCar = engine.getActiveCar();
+        for (int i = 0; i < drawn.length; i++) drawn[i] = published[i] = stateFor(activeCar, i);
+        repaintAllLocations();
+        for (int c = 0; c < n; c++) {
+            carAt[c] = engine.getCurrent(c);
+            shown[c] = to > c || c == activeCar;
+        }
+        repaintCars(0, 0, Math.max(carLayer.getWidth(), carLayer.getHeight()));
+        showCar(activeCar);
+        if (engine.isOver()) endRace(engine.getWinner());
+        showTurn();
+    }
+
+    /**
+     * Takes a snapshot of the trails if the replay has got to a turn one is kept for and it has none yet.
+     *
+     * @param moves The number of moves the trails show.
+     */
+    private void keepTrails(long moves) {
+        if (moves % snapshotStride != 0 || snapshots[(int) (moves / snapshotStride)] != null) return;
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        snapshots[(int) (moves / snapshotStride)] = trailLayer.snapshot(parameters, null);
+    }
+
+    /**
+     * Moves the slider and the label along with the replay.
+     */
+    private void showTurn() {
+        following = true;
+        turnSlider.setValue(turn);
+        following = false;
+        turnLabel.setText("Turn " + turn + " of " + replay.getMoves());
+    }
+
+    /**
+     * Makes the last cars computer controlled. Called after setTrack.
+     *
+     * @param numBots      The number of computer controlled cars.
+     * @param driver       Creates a driver for each computer controlled car.
+     * @param budgetMillis How long a computer controlled car may think about each turn.
+     */
+    public void setBots(int numBots, Supplier<Driver> driver, long budgetMillis) {
+        logic.setBots(numBots, header.getNumPlayers(), driver, budgetMillis);
+    }
+
+    /**
+     * Records every turn from now on. Called after setTrack.
+     *
+     * @param file The file to record to, replaced if it exists.
+     * @throws IOException if the file can't be written.
+     */
+    public void record(Path file) throws IOException {
+        logic.record(file);
+    }
+
+    /**
+     * @return The seed the race was set up with.
+     */
+    public long getSeed() {
+        return header.getSeed();
+    }
+
+    /**
+     * Cancels any computer controlled turn in progress, finishes the log and closes the replay.
+     * Called when the track is left.
+     */
+    public void stop() {
+        stopped = true;
+        logic.stop();
+        if (replay != null) {
+            player.stop();
+            try {
+                replay.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
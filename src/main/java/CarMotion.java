@@ -0,0 +1,172 @@
+package main.java;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+
+import java.util.Arrays;
+
+/**
+ * Moves every car with one AnimationTimer instead of an animation object per car or per move.
+ * A moving car is already at its destination and is drawn back along the leg through its translation,
+ * which runs down to zero. What each car is doing is kept in primitive arrays indexed by car, so a frame
+ * allocates nothing, and the timer only runs while a car is moving.
+ */
+public class CarMotion extends AnimationTimer {
+
+    /**
+     * The car nodes, indexed by car.
+     */
+    private Node[] nodes;
+
+    /**
+     * How far each car starts from its destination.
+     */
+    private double[] fromX, fromY;
+
+    /**
+     * How much of its leg each car has driven, from 0 to 1.
+     */
+    private double[] progress;
+
+    /**
+     * The cars that are moving, and how many there are.
+     */
+    private int[] moving;
+    private int numMoving;
+
+    /**
+     * Where each car is in moving, -1 if it is standing still.
+     */
+    private int[] slot;
+
+    /**
+     * How long a leg takes at normal speed, in nanoseconds.
+     */
+    private double duration;
+
+    /**
+     * How many times faster than normal cars drive.
+     */
+    private double timeScale = 1;
+
+    /**
+     * True to put cars at their destination straight away.
+     */
+    private boolean skip;
+
+    /**
+     * The time of the last frame, -1 before the first frame after starting.
+     */
+    private long lastFrame = -1;
+
+    /**
+     * @param numCars The number of cars.
+     * @param seconds How long a leg takes at normal speed.
+     */
+    public CarMotion(int numCars, double seconds) {
+        nodes = new Node[numCars];
+        fromX = new double[numCars];
+        fromY = new double[numCars];
+        progress = new double[numCars];
+        moving = new int[numCars];
+        slot = new int[numCars];
+        Arrays.fill(slot, -1);
+        duration = seconds * 1e9;
+    }
+
+    /**
+     * @param car  The car.
+     * @param node The node that shows it.
+     */
+    public void setNode(int car, Node node) {
+        nodes[car] = node;
+    }
+
+    /**
+     * Drives a car along a leg. Its node has to be at the end of the leg already.
+     * A car still on its previous leg starts the new one from where it is shown.
+     *
+     * @param car The car.
+     * @param dx  How far the start of the leg is from the end, horizontally.
+     * @param dy  How far the start of the leg is from the end, vertically.
+     */
+    public void move(int car, double dx, double dy) {
+        Node node = nodes[car];
+        node.setRotate(Math.toDegrees(Math.atan2(-dy, -dx)));
+        if (skip) {
+            node.setTranslateX(0);
+            node.setTranslateY(0);
+            return;
+        }
+        fromX[car] = dx + node.getTranslateX();
+        fromY[car] = dy + node.getTranslateY();
+        progress[car] = 0;
+        node.setTranslateX(fromX[car]);
+        node.setTranslateY(fromY[car]);
+        if (slot[car] < 0) {
+            slot[car] = numMoving;
+            moving[numMoving++] = car;
+        }
+        if (numMoving == 1) {
+            lastFrame = -1;
+            start();
+        }
+    }
+
+    /**
+     * @param scale How many times faster than normal cars drive, 1 for normal.
+     */
+    public void setTimeScale(double scale) {
+        timeScale = scale;
+    }
+
+    /**
+     * @param skip True to put cars at their destination straight away. Cars already moving are finished.
+     */
+    public void setSkip(boolean skip) {
+        this.skip = skip;
+        if (skip) finish();
+    }
+
+    /**
+     * Puts every moving car at its destination.
+     */
+    public void finish() {
+        while (numMoving > 0) arrive(moving[0]);
+        stop();
+    }
+
+    /**
+     * Moves every moving car on by the time since the last frame.
+     *
+     * @param now The time of this frame in nanoseconds.
+     */
+    @Override
+    public void handle(long now) {
+        double step = lastFrame < 0 ? 0 : (now - lastFrame) * timeScale / duration;
+        lastFrame = now;
+        for (int k = numMoving - 1; k >= 0; k--) {
+            int car = moving[k];
+            double t = progress[car] += step;
+            if (t >= 1) arrive(car);
+            else {
+                nodes[car].setTranslateX(fromX[car] * (1 - t));
+                nodes[car].setTranslateY(fromY[car] * (1 - t));
+            }
+        }
+        if (numMoving == 0) stop();
+    }
+
+    /**
+     * Puts a car at its destination and stops moving it.
+     */
+    private void arrive(int car) {
+        nodes[car].setTranslateX(0);
+        nodes[car].setTranslateY(0);
+        int k = slot[car], last = moving[--numMoving];
+        moving[k] = last;
+        slot[last] = k;
+        slot[car] = -1;
+    }
+
+}
@@ -0,0 +1,93 @@
+package main.java;
+
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * A row of the cars table in the stats panel. Remembers what it shows, so a cell is only
+ * reformatted and redrawn when its value actually changed.
+ */
+public class CarRow {
+
+    /**
+     * The values shown.
+     */
+    private ReadOnlyStringWrapper car, time, projected, current, end;
+
+    /**
+     * The values last shown, to tell whether anything changed.
+     */
+    private double lastTime = -1, lastProjected = -1;
+    private int lastCurrent = -1, lastEnd = -1;
+
+    /**
+     * @param id The identifier of the car.
+     */
+    public CarRow(int id) {
+        car = new ReadOnlyStringWrapper(Integer.toString(id + 1));
+        time = new ReadOnlyStringWrapper();
+        projected = new ReadOnlyStringWrapper();
+        current = new ReadOnlyStringWrapper();
+        end = new ReadOnlyStringWrapper();
+    }
+
+    /**
+     * @param timeIn      The total time the car has driven for.
+     * @param projectedIn The least time the car can finish in.
+     * @param currentId   The location the car is at.
+     * @param currentName The name of the location the car is at.
+     * @param endId       The location the car has to finish at.
+     * @param endName     The name of the location the car has to finish at.
+     * @return True if anything shown changed.
+     */
+    public boolean update(double timeIn, double projectedIn, int currentId, String currentName, int endId, String endName) {
+        boolean changed = false;
+        if (timeIn != lastTime) {
+            lastTime = timeIn;
+            time.set(StatsFormat.tenths(timeIn));
+            changed = true;
+        }
+        if (projectedIn != lastProjected) {
+            lastProjected = projectedIn;
+            projected.set(StatsFormat.tenths(projectedIn));
+            changed = true;
+        }
+        if (currentId != lastCurrent) {
+            lastCurrent = currentId;
+            current.set(currentName);
+            changed = true;
+        }
+        if (endId != lastEnd) {
+            lastEnd = endId;
+            end.set(endName);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return The number of the car.
+     */
+    public ReadOnlyStringProperty carProperty() { return car.getReadOnlyProperty(); }
+
+    /**
+     * @return The time the car has driven for.
+     */
+    public ReadOnlyStringProperty timeProperty() { return time.getReadOnlyProperty(); }
+
+    /**
+     * @return The least time the car can finish in.
+     */
+    public ReadOnlyStringProperty projectedProperty() { return projected.getReadOnlyProperty(); }
+
+    /**
+     * @return The name of the location the car is at.
+     */
+    public ReadOnlyStringProperty currentProperty() { return current.getReadOnlyProperty(); }
+
+    /**
+     * @return The name of the location the car has to finish at.
+     */
+    public ReadOnlyStringProperty endProperty() { return end.getReadOnlyProperty(); }
+
+}
@@ -0,0 +1,214 @@
+package main.java;
+
+/**
+ * Every car of a race as parallel arrays indexed by car id, instead of an object per car.
+ * A car costs a few bytes of components plus its time and locations, so many races can be kept in memory
+ * at once. Car nodes only show what is kept here.
+ */
+public class CarState {
+
+    /**
+     * The components of each car. Every component fits in a byte.
+     */
+    private byte[] engine, tires, weight, boost;
+
+    /**
+     * Whether each car's boost is active.
+     */
+    private boolean[] boosted;
+
+    /**
+     * The total time each car has driven for.
+     */
+    private double[] time;
+
+    /**
+     * Each car's start, end and current location.
+     */
+    private int[] start, end, current;
+
+    /**
+     * The number of locations each car has visited, including its start.
+     */
+    private int[] visitedCount;
+
+    /**
+     * The number of cars added so far.
+     */
+    private int size;
+
+    /**
+     * @param capacity The number of cars that will be added.
+     */
+    public CarState(int capacity) {
+        engine = new byte[capacity];
+        tires = new byte[capacity];
+        weight = new byte[capacity];
+        boost = new byte[capacity];
+        boosted = new boolean[capacity];
+        time = new double[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+        current = new int[capacity];
+        visitedCount = new int[capacity];
+    }
+
+    /**
+     * Copies the cars of another race.
+     *
+     * @param other The cars to copy.
+     */
+    public CarState(CarState other) {
+        engine = other.engine.clone();
+        tires = other.tires.clone();
+        weight = other.weight.clone();
+        boost = other.boost.clone();
+        boosted = other.boosted.clone();
+        start = other.start.clone();
+        end = other.end.clone();
+        time = other.time.clone();
+        current = other.current.clone();
+        visitedCount = other.visitedCount.clone();
+        size = other.size;
+    }
+
+    /**
+     * Adds a car at its start, without any time or visited locations.
+     *
+     * @param stats   The components of the car.
+     * @param startAt The location the car starts at.
+     * @param endAt   The location the car has to finish at.
+     * @return The identifier of the car.
+     */
+    public int add(CarStats stats, int startAt, int endAt) {
+        int id = size++;
+        engine[id] = (byte) stats.getEngine();
+        tires[id] = (byte) stats.getTires();
+        weight[id] = (byte) stats.getWeight();
+        boost[id] = (byte) stats.getBoost();
+        boosted[id] = stats.isBoosted();
+        start[id] = startAt;
+        end[id] = endAt;
+        current[id] = startAt;
+        return id;
+    }
+
+    /**
+     * @param car      The car.
+     * @param distance The distance covered.
+     * @return The time it takes the car to cover the distance, the same as CarStats.calculateTime.
+     */
+    public double calculateTime(int car, double distance) {
+        return CarStats.calculateTime(distance, engine[car], tires[car], weight[car], boost[car], boosted[car]);
+    }
+
+    /**
+     * Moves a car and adds the time of the leg. Visiting is left to the caller.
+     *
+     * @param car      The car.
+     * @param location The location the car is now at.
+     * @param legTime  The time the leg took.
+     */
+    public void moveTo(int car, int location, double legTime) {
+        time[car] += legTime;
+        current[car] = location;
+    }
+
+    /**
+     * Counts one more location as visited by a car.
+     *
+     * @param car The car.
+     * @return The number of locations the car has now visited.
+     */
+    public int countVisit(int car) {
+        return ++visitedCount[car];
+    }
+
+    /**
+     * Puts a car back in a saved state.
+     *
+     * @param car          The car.
+     * @param location     The location the car is at.
+     * @param visitedCount The number of locations it has visited.
+     * @param timeIn       The time it has driven for.
+     */
+    public void restore(int car, int location, int visitedCount, double timeIn) {
+        current[car] = location;
+        this.visitedCount[car] = visitedCount;
+        time[car] = timeIn;
+    }
+
+    /**
+     * @param car The car.
+     * @return The components of the car, as a new CarStats.
+     */
+    public CarStats getStats(int car) {
+        return new CarStats(engine[car], tires[car], weight[car], boost[car], boosted[car]);
+    }
+
+    /**
+     * @return The number of cars.
+     */
+    public int size() { return size; }
+
+    /**
+     * @param car The car.
+     * @return The engine component.
+     */
+    public int getEngine(int car) { return engine[car]; }
+
+    /**
+     * @param car The car.
+     * @return The tires component.
+     */
+    public int getTires(int car) { return tires[car]; }
+
+    /**
+     * @param car The car.
+     * @return The weight component.
+     */
+    public int getWeight(int car) { return weight[car]; }
+
+    /**
+     * @param car The car.
+     * @return The boost component.
+     */
+    public int getBoost(int car) { return boost[car]; }
+
+    /**
+     * @param car The car.
+     * @return True if the car's boost is active.
+     */
+    public boolean isBoosted(int car) { return boosted[car]; }
+
+    /**
+     * @param car The car.
+     * @return The total time the car has driven for.
+     */
+    public double getTime(int car) { return time[car]; }
+
+    /**
+     * @param car The car.
+     * @return The location the car started at.
+     */
+    public int getStart(int car) { return start[car]; }
+
+    /**
+     * @param car The car.
+     * @return The location the car has to finish at.
+     */
+    public int getEnd(int car) { return end[car]; }
+
+    /**
+     * @param car The car.
+     * @return The location the car is at.
+     */
+    public int getCurrent(int car) { return current[car]; }
+
+    /**
+     * @param car The car.
+     * @return The number of locations the car has visited, including its start.
+     */
+    public int getVisitedCount(int car) { return visitedCount[car]; }
+
+}
@@ -0,0 +1,147 @@
+package main.java;
+
+import java.util.Random;
+
+/**
+ * The components of a car, kept apart from its graphical representation so the
+ * race rules can be evaluated without a scene graph.
+ */
+public class CarStats {
+
+    /**
+     * Components of a car. Contribute to time
+     * Engine will impact top speed, tires will impact acceleration, and weight will affect both.
+     * Boost will affect how much quicker you go when you activate it.
+     */
+    private int engine, tires, boost, weight;
+
+    /** This is what all the components should add up to. */
+    private int total;
+
+    /** TODO: Turbo boost?? */
+    private boolean isBoosted;
+
+    /**
+     * Creates a set of components.
+     * @param statTotal the total you want the stats to add up to.
+     */
+    public CarStats(int statTotal) {
+        this(statTotal, new Random());
+    }
+
+    /**
+     * Creates a reproducible set of components.
+     * @param statTotal the total you want the stats to add up to.
+     * @param rand Random number generator.
+     */
+    public CarStats(int statTotal, Random rand) {
+        primeStats(statTotal, rand);
+    }
+
+    /**
+     * Recreates a set of components, as kept by CarState.
+     * @param engine The engine component.
+     * @param tires The tires component.
+     * @param weight The weight component.
+     * @param boost The boost component.
+     * @param isBoosted True if the boost is active.
+     */
+    public CarStats(int engine, int tires, int weight, int boost, boolean isBoosted) {
+        this.engine = engine;
+        this.tires = tires;
+        this.weight = weight;
+        this.boost = boost;
+        this.isBoosted = isBoosted;
+    }
+
+    /**
+     * Artem
+     * Sets up the attributes of the car to begin with. Should only be used once.
+     * @param statTotal the total you want the stats to add up to.
+     * @param rand Random number generator.
+     */
+    private void primeStats(int statTotal, Random rand) {
+        this.total = statTotal; //This number is fairly arbitrary, but if all the stats are 6 they'll add up to a little bit less than that which seems fair.
+        int ran = (int)((rand.nextDouble()*10)+1); //1-10
+        engine = ran; total -= ran;
+
+        do{
+            ran = (int)((rand.nextDouble()*10)+1);
+        }while(ran>total);
+        tires = ran; total -= ran;
+
+        do {
+            ran = (int) ((rand.nextDouble() * 10) + 1);
+        }while(ran>total);
+        weight = ran; total -= ran;
+
+        boost = total; //Whatever is left goes to boost
+        total = 0;
+
+    }
+
+    /**
+     * Artem
+     * Calculates time based on parameters.
+     * Made it so that 5 is the midpoint for each parameter in the calculations.
+     * @param distance takes variable of the distance that is covered in this turn
+     * @return The time it takes to cover the distance.
+     */
+    public double calculateTime(double distance){
+        return calculateTime(distance, engine, tires, weight, boost, isBoosted);
+    }
+
+    /**
+     * Calculates time from components that are not kept in a CarStats, such as those of a CarState.
+     * @param distance The distance covered in this turn.
+     * @param engine The engine component.
+     * @param tires The tires component.
+     * @param weight The weight component.
+     * @param boost The boost component.
+     * @param isBoosted True if the boost is active.
+     * @return The time it takes to cover the distance.
+     */
+    public static double calculateTime(double distance, int engine, int tires, int weight, int boost, boolean isBoosted){
+        double addedTime = 0;
+        if(distance >= 5) { //I conducted a series of playthroughs. Value of distance seems to be between 0 < d < 10, approx.
+            addedTime += distance * (1/(0.5 + 0.1*engine)); //If distance is greater than half the avg., engine comes into play.
+        }
+        else if(distance < 5){
+            addedTime += distance * (1/(0.5 + 0.1*tires)); //Tires == acceleration == distance < 5
+        }
+
+        addedTime = addedTime * (1/(0.9 + (0.02*weight))); //Weight makes a difference but on a smaller scale
+
+        if(isBoosted){
+            addedTime = addedTime * (1/(1 + 0.1*boost)); //Boost can never hurt you when it is structured this way. Even at 1, you're still reducing time.
+        }
+
+        return addedTime;
+    }
+
+    /**
+     * @return The engine component.
+     */
+    public int getEngine() { return engine; }
+
+    /**
+     * @return The tires component.
+     */
+    public int getTires() { return tires; }
+
+    /**
+     * @return The weight component.
+     */
+    public int getWeight() { return weight; }
+
+    /**
+     * @return The boost component.
+     */
+    public int getBoost() { return boost; }
+
+    /**
+     * @return True if the boost is active, otherwise false.
+     */
+    public boolean isBoosted() { return isBoosted; }
+
+}
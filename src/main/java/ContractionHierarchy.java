@@ -0,0 +1,398 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Makes shortest routes on a RoadGraph quick to find by contracting its junctions one at a time,
+ * least important first. Contracting a junction takes it out of the graph and adds a shortcut between
+ * each pair of its neighbours whose shortest route went through it. Afterwards every shortest route
+ * climbs to a most important junction and comes back down, so a RoadRouter only has to search upward
+ * from both ends, which on road networks touches hundreds of junctions instead of the whole graph.
+ * The upward roads, shortcuts included, are kept in compressed sparse rows like the graph's.
+ */
+public class ContractionHierarchy {
+
+    /**
+     * How many junctions a witness search may settle before a shortcut is added just in case.
+     * Extra shortcuts never give wrong routes, only a slightly bigger hierarchy.
+     */
+    private static final int WITNESS_LIMIT = 64;
+
+    /**
+     * The same when only counting the shortcuts to rank a junction, where a rough count does.
+     */
+    private static final int ESTIMATE_LIMIT = 16;
+
+    /**
+     * The roads.
+     */
+    private RoadGraph graph;
+
+    /**
+     * When each junction was contracted, the most important has the highest rank.
+     */
+    private int[] rank;
+
+    /**
+     * Where the upward roads of each junction start in target, weight and middle.
+     */
+    private int[] first;
+
+    /**
+     * The more important junction each upward road leads to.
+     */
+    private int[] target;
+
+    /**
+     * The length of each upward road.
+     */
+    private double[] weight;
+
+    /**
+     * The junction a shortcut stands in for a route through, -1 for a road of the graph.
+     */
+    private int[] middle;
+
+    /**
+     * The roads between junctions not contracted yet, shortcuts included, while contracting.
+     * Entry k of node v leads to adj[v][k], adjWeight[v][k] long, through adjMiddle[v][k].
+     */
+    private int[][] adj, adjMiddle;
+    private double[][] adjWeight;
+    private int[] degree;
+
+    /**
+     * The witness search: how far it got to each junction, stamped with the search that got there.
+     */
+    private double[] witnessCost;
+    private int[] witnessSearch;
+    private int witness;
+    private NodeHeap witnessHeap = new NodeHeap();
+
+    /**
+     * Contracts every junction of the graph.
+     *
+     * @param graph The roads.
+     */
+    public ContractionHierarchy(RoadGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        adj = new int[n][];
+        adjMiddle = new int[n][];
+        adjWeight = new double[n][];
+        degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            int size = graph.getEnd(v) - graph.getFirst(v);
+            adj[v] = new int[size];
+            adjMiddle[v] = new int[size];
+            adjWeight[v] = new double[size];
+        }
+        for (int v = 0; v < n; v++)
+            for (int r = graph.getFirst(v); r < graph.getEnd(v); r++)
+                if (graph.getTarget(r) != v) connect(v, graph.getTarget(r), graph.getWeight(r), -1);
+        witnessCost = new double[n];
+        witnessSearch = new int[n];
+
+        // Upward roads are known the moment a junction is contracted, they are gathered in contraction order.
+        int[] upStart = new int[n], upCount = new int[n];
+        int[] upTarget = new int[2 * n], upMiddle = new int[2 * n];
+        double[] upWeight = new double[2 * n];
+        int ups = 0;
+
+        rank = new int[n];
+        Arrays.fill(rank, -1);
+        int[] contractedNeighbours = new int[n];
+        double[] priority = new double[n];
+        NodeHeap queue = new NodeHeap();
+        for (int v = 0; v < n; v++) queue.push(priority[v] = priorityOf(v, 0), v);
+        for (int order = 0; !queue.isEmpty(); ) {
+            double key = queue.peekKey();
+            int v = queue.pop();
+            if (rank[v] >= 0 || key != priority[v]) continue;
+            // Priorities go stale as the graph changes around a junction. Rather than work them out again for
+            // every neighbour of each junction contracted, only the one about to be contracted is checked.
+            double now = priorityOf(v, contractedNeighbours[v]);
+            if (now > queue.peekKey()) {
+                queue.push(priority[v] = now, v);
+                continue;
+            }
+            rank[v] = order++;
+            if (ups + degree[v] > upTarget.length) {
+                int grown = Math.max(upTarget.length * 2, ups + degree[v]);
+                upTarget = Arrays.copyOf(upTarget, grown);
+                upMiddle = Arrays.copyOf(upMiddle, grown);
+                upWeight = Arrays.copyOf(upWeight, grown);
+            }
+            upStart[v] = ups;
+            upCount[v] = degree[v];
+            System.arraycopy(adj[v], 0, upTarget, ups, degree[v]);
+            System.arraycopy(adjMiddle[v], 0, upMiddle, ups, degree[v]);
+            System.arraycopy(adjWeight[v], 0, upWeight, ups, degree[v]);
+            ups += degree[v];
+            contract(v, false);
+            for (int k = 0; k < degree[v]; k++) {
+                int u = adj[v][k];
+                disconnect(u, v);
+                contractedNeighbours[u]++;
+            }
+            adj[v] = adjMiddle[v] = null;
+            adjWeight[v] = null;
+        }
+        adj = adjMiddle = null;
+        adjWeight = null;
+        witnessCost = null;
+        witnessSearch = null;
+
+        first = new int[n + 1];
+        for (int v = 0; v < n; v++) first[v + 1] = first[v] + upCount[v];
+        target = new int[ups];
+        middle = new int[ups];
+        weight = new double[ups];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(upTarget, upStart[v], target, first[v], upCount[v]);
+            System.arraycopy(upMiddle, upStart[v], middle, first[v], upCount[v]);
+            System.arraycopy(upWeight, upStart[v], weight, first[v], upCount[v]);
+        }
+    }
+
+    /**
+     * @return How much contracting a junction now would grow the graph, plus how many of its neighbours
+     * are already gone, which spreads the contractions evenly over the graph.
+     */
+    private double priorityOf(int v, int contractedNeighbours) {
+        return contract(v, true) - degree[v] + contractedNeighbours;
+    }
+
+    /**
+     * Works out which shortcuts contracting a junction needs: one between each pair of its neighbours
+     * unless a witness search finds a route between them at least as short that avoids it.
+     *
+     * @param v        The junction.
+     * @param simulate True to only count the shortcuts.
+     * @return The number of shortcuts.
+     */
+    private int contract(int v, boolean simulate) {
+        int[] neighbours = adj[v];
+        double[] lengths = adjWeight[v];
+        int count = degree[v], shortcuts = 0;
+        for (int i = 0; i < count - 1; i++) {
+            double longest = 0;
+            for (int j = i + 1; j < count; j++) longest = Math.max(longest, lengths[j]);
+            searchWitness(neighbours[i], v, lengths[i] + longest, simulate ? ESTIMATE_LIMIT : WITNESS_LIMIT);
+            for (int j = i + 1; j < count; j++) {
+                int w = neighbours[j];
+                double via = lengths[i] + lengths[j];
+                if (witnessSearch[w] == witness && witnessCost[w] <= via) continue;
+                shortcuts++;
+                if (!simulate) connect(neighbours[i], w, via, v);
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Runs Dijkstra's search from a junction around the one being contracted, up to a distance or a
+     * number of junctions settled.
+     */
+    private void searchWitness(int from, int avoid, double limit, int settleLimit) {
+        if (++witness == Integer.MAX_VALUE) {
+            Arrays.fill(witnessSearch, 0);
+            witness = 1;
+        }
+        witnessHeap.clear();
+        witnessSearch[from] = witness;
+        witnessCost[from] = 0;
+        witnessHeap.push(0, from);
+        for (int settled = 0; !witnessHeap.isEmpty() && settled < settleLimit; settled++) {
+            if (witnessHeap.peekKey() > limit) return;
+            double cost = witnessHeap.peekKey();
+            int u = witnessHeap.pop();
+            if (cost > witnessCost[u]) {
+                settled--;
+                continue;
+            }
+            for (int k = 0; k < degree[u]; k++) {
+                int w = adj[u][k];
+                double through = cost + adjWeight[u][k];
+                if (w == avoid || witnessSearch[w] == witness && through >= witnessCost[w]) continue;
+                witnessSearch[w] = witness;
+                witnessCost[w] = through;
+                witnessHeap.push(through, w);
+            }
+        }
+    }
+
+    /**
+     * Adds a road both ways, or shortens the one already there.
+     */
+    private void connect(int a, int b, double length, int through) {
+        link(a, b, length, through);
+        link(b, a, length, through);
+    }
+
+    /**
+     * Adds a road one way, or shortens the one already there.
+     */
+    private void link(int a, int b, double length, int through) {
+        for (int k = 0; k < degree[a]; k++) {
+            if (adj[a][k] != b) continue;
+            if (length < adjWeight[a][k]) {
+                adjWeight[a][k] = length;
+                adjMiddle[a][k] = through;
+            }
+            return;
+        }
+        int k = degree[a]++;
+        if (k == adj[a].length) {
+            int grown = Math.max(4, k * 2);
+            adj[a] = Arrays.copyOf(adj[a], grown);
+            adjMiddle[a] = Arrays.copyOf(adjMiddle[a], grown);
+            adjWeight[a] = Arrays.copyOf(adjWeight[a], grown);
+        }
+        adj[a][k] = b;
+        adjWeight[a][k] = length;
+        adjMiddle[a][k] = through;
+    }
+
+    /**
+     * Takes a contracted junction out of another's roads.
+     */
+    private void disconnect(int a, int b) {
+        for (int k = 0; k < degree[a]; k++) {
+            if (adj[a][k] != b) continue;
+            int last = --degree[a];
+            adj[a][k] = adj[a][last];
+            adjWeight[a][k] = adjWeight[a][last];
+            adjMiddle[a][k] = adjMiddle[a][last];
+            return;
+        }
+    }
+
+    /**
+     * Works out the shortest route between every pair of locations. The upward search from each
+     * location is run once and left in buckets at the junctions it reaches; the route between two
+     * locations is then the best sum over the junctions both searches reached. A sum is the same added
+     * either way round, so the matrix is exactly symmetric.
+     *
+     * @param nodes The junction of each location.
+     * @return The lengths of the routes.
+     * @throws IllegalArgumentException if there are more than RoadGraph.MAX_LOCATIONS locations.
+     */
+    public DistanceMatrix distances(int[] nodes) {
+        int count = nodes.length;
+        if (count > RoadGraph.MAX_LOCATIONS)
+            throw new IllegalArgumentException("Too many locations to route between: " + count);
+        ThreadLocal<RoadRouter> routers = ThreadLocal.withInitial(() -> new RoadRouter(this));
+        int[][] reached = new int[count][];
+        double[][] costs = new double[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            RoadRouter router = routers.get();
+            int size = router.searchUp(nodes[i]);
+            reached[i] = new int[size];
+            costs[i] = new double[size];
+            router.copySearch(reached[i], costs[i]);
+        });
+
+        int[] bucketStart = new int[graph.size() + 1];
+        for (int[] space : reached) for (int v : space) bucketStart[v + 1]++;
+        for (int v = 0; v < graph.size(); v++) bucketStart[v + 1] += bucketStart[v];
+        int[] next = Arrays.copyOf(bucketStart, graph.size());
+        int[] bucketLocation = new int[bucketStart[graph.size()]];
+        double[] bucketCost = new double[bucketLocation.length];
+        for (int i = 0; i < count; i++)
+            for (int k = 0; k < reached[i].length; k++) {
+                int slot = next[reached[i][k]]++;
+                bucketLocation[slot] = i;
+                bucketCost[slot] = costs[i][k];
+            }
+
+        double[] distances = new double[count * count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int row = i * count;
+            Arrays.fill(distances, row, row + count, Double.POSITIVE_INFINITY);
+            for (int k = 0; k < reached[i].length; k++) {
+                int v = reached[i][k];
+                double up = costs[i][k];
+                for (int b = bucketStart[v]; b < bucketStart[v + 1]; b++) {
+                    double d = up + bucketCost[b];
+                    if (d < distances[row + bucketLocation[b]]) distances[row + bucketLocation[b]] = d;
+                }
+            }
+        });
+        return new DistanceMatrix(count, distances);
+    }
+
+    /**
+     * @return The roads that were contracted.
+     */
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param node The junction.
+     * @return When it was contracted, higher is more important.
+     */
+    public int getRank(int node) {
+        return rank[node];
+    }
+
+    /**
+     * @param node The junction.
+     * @return Where its upward roads start in getTarget, getWeight and getMiddle.
+     */
+    public int getFirst(int node) {
+        return first[node];
+    }
+
+    /**
+     * @param node The junction.
+     * @return Where its upward roads end, exclusive.
+     */
+    public int getEnd(int node) {
+        return first[node + 1];
+    }
+
+    /**
+     * @param road The upward road.
+     * @return The junction it leads to.
+     */
+    public int getTarget(int road) {
+        return target[road];
+    }
+
+    /**
+     * @param road The upward road.
+     * @return Its length.
+     */
+    public double getWeight(int road) {
+        return weight[road];
+    }
+
+    /**
+     * @param road The upward road.
+     * @return The junction the shortcut goes through, -1 if it is a road of the graph.
+     */
+    public int getMiddle(int road) {
+        return middle[road];
+    }
+
+    /**
+     * @param from The less important junction.
+     * @param to   The more important junction.
+     * @return The upward road between them, -1 if there is none.
+     */
+    public int findRoad(int from, int to) {
+        for (int r = first[from]; r < first[from + 1]; r++) if (target[r] == to) return r;
+        return -1;
+    }
+
+    /**
+     * @return The number of upward roads, shortcuts included.
+     */
+    public int getNumRoads() {
+        return target.length;
+    }
+
+}
@@ -0,0 +1,165 @@
+package main.java;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The distance between every pair of locations, computed once when the track is set.
+ * Small tracks keep a full row-major double[] so a lookup is a single array load.
+ * Big tracks keep only the lower triangle as a float[], which halves the pairs and their size.
+ * Huge tracks, where even that would take hundreds of megabytes, keep the coordinates and
+ * compute each distance when asked.
+ */
+public class DistanceMatrix {
+
+    /**
+     * Above this many locations the matrix is packed as a triangular float[]. 1024 full take 8 MB.
+     */
+    public static final int PACKED_THRESHOLD = 1024;
+
+    /**
+     * Above this many locations distances are computed when asked. 8192 packed take 128 MB.
+     */
+    public static final int ON_DEMAND_THRESHOLD = 8192;
+
+    /**
+     * The number of locations.
+     */
+    private int size;
+
+    /**
+     * The shortest distance between two different locations.
+     */
+    private double minDistance = Double.POSITIVE_INFINITY;
+
+    /**
+     * Row-major distances, used when the track is small.
+     */
+    private double[] full;
+
+    /**
+     * Lower triangle of the distances without the diagonal, used when the track is big.
+     */
+    private float[] packed;
+
+    /**
+     * The coordinates of the locations, used when the track is huge.
+     */
+    private double[] x, y;
+
+    /**
+     * Computes the distance between every pair of locations.
+     *
+     * @param locationX The x coordinate of each location's center.
+     * @param locationY The y coordinate of each location's center.
+     */
+    public DistanceMatrix(double[] locationX, double[] locationY) {
+        size = locationX.length;
+        if (size <= PACKED_THRESHOLD) {
+            full = new double[size * size];
+            for (int i = 0; i < size; i++)
+                for (int j = i + 1; j < size; j++) {
+                    double d = distance(locationX, locationY, i, j);
+                    full[i * size + j] = d;
+                    full[j * size + i] = d;
+                    if (d < minDistance) minDistance = d;
+                }
+        } else if (size > ON_DEMAND_THRESHOLD) {
+            x = locationX.clone();
+            y = locationY.clone();
+            minDistance = closestPair(x, y);
+        } else {
+            long pairs = (long) size * (size - 1) / 2;
+            if (pairs > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("Too many locations for a distance matrix: " + size);
+            packed = new float[(int) pairs];
+            for (int j = 1; j < size; j++) {
+                int row = (int) ((long) j * (j - 1) / 2);
+                for (int i = 0; i < j; i++) {
+                    packed[row + i] = (float) distance(locationX, locationY, i, j);
+                    if (packed[row + i] < minDistance) minDistance = packed[row + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps distances worked out elsewhere, such as along roads, stored the same way as computed ones.
+     *
+     * @param size      The number of locations.
+     * @param distances Row-major distances between every pair of locations. Has to be symmetric,
+     *                  only the lower triangle is kept on big tracks. Kept as it is on small tracks.
+     * @throws IllegalArgumentException if there are too many locations to keep every distance.
+     */
+    public DistanceMatrix(int size, double[] distances) {
+        if (size > ON_DEMAND_THRESHOLD)
+            throw new IllegalArgumentException("Too many locations for a distance matrix: " + size);
+        this.size = size;
+        if (size <= PACKED_THRESHOLD) full = distances;
+        else packed = new float[size * (size - 1) / 2];
+        for (int j = 1; j < size; j++) {
+            int row = j * (j - 1) / 2;
+            for (int i = 0; i < j; i++) {
+                double d = distances[j * size + i];
+                if (packed != null) d = packed[row + i] = (float) d;
+                if (d < minDistance) minDistance = d;
+            }
+        }
+    }
+
+    /**
+     * Finds the shortest distance between two locations by sweeping them in order of x, only comparing
+     * locations whose x are closer than the shortest distance found so far.
+     */
+    private static double closestPair(double[] locationX, double[] locationY) {
+        int[] order = IntStream.range(0, locationX.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> locationX[i])).mapToInt(Integer::intValue).toArray();
+        double best = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < order.length; a++)
+            for (int b = a + 1; b < order.length && (locationX[order[b]] - locationX[order[a]]) / 100 < best; b++)
+                best = Math.min(best, distance(locationX, locationY, order[a], order[b]));
+        return best;
+    }
+
+    /**
+     * Computes the hypotenuse of the difference of x and y values, scaled the same as Location.
+     */
+    private static double distance(double[] locationX, double[] locationY, int i, int j) {
+        return Math.hypot(locationX[j] - locationX[i], locationY[j] - locationY[i]) / 100;
+    }
+
+    /**
+     * @param from The location to get the distance from.
+     * @param to   The location to get the distance to.
+     * @return The distance between the two locations.
+     */
+    public double get(int from, int to) {
+        if (full != null) return full[from * size + to];
+        if (from == to) return 0;
+        if (x != null) return distance(x, y, from, to);
+        int i = Math.min(from, to), j = Math.max(from, to);
+        return packed[(int) ((long) j * (j - 1) / 2) + i];
+    }
+
+    /**
+     * @return The number of locations.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The shortest distance between two different locations, infinite if there are fewer than two.
+     */
+    public double getMinDistance() {
+        return minDistance;
+    }
+
+    /**
+     * @return True if the distances are stored as a packed triangular float[].
+     */
+    public boolean isPacked() {
+        return packed != null;
+    }
+
+}
@@ -0,0 +1,40 @@
+package main.java;
+
+/**
+ * Decides where a computer controlled car goes next.
+ * Drivers are called off the JavaFX application thread with a copy of the race, so they may take
+ * their time up to the deadline, and should give up early if their thread is interrupted.
+ */
+public interface Driver {
+
+    /**
+     * @param engine   A copy of the race. It is the given car's turn.
+     * @param car      The car to drive.
+     * @param deadline The System.nanoTime() by which a location has to be chosen.
+     * @return A location the car can move to.
+     */
+    int chooseNext(RaceEngine engine, int car, long deadline);
+
+    /**
+     * @param deadline The System.nanoTime() by which a location has to be chosen.
+     * @return True once the deadline has passed or the thread was interrupted, so the driver has to stop.
+     */
+    static boolean outOfTime(long deadline) {
+        return System.nanoTime() >= deadline || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @param engine The race.
+     * @param car    The car.
+     * @return The locations the car still has to visit before its end, or just its end if that is all that is left.
+     */
+    static int[] remaining(RaceEngine engine, int car) {
+        if (engine.isEndAvailable(car)) return new int[]{engine.getEnd(car)};
+        int[] out = new int[engine.getNumLocations() - engine.getVisitedCount(car) - 1];
+        int k = 0;
+        for (int l = engine.nextUnvisited(car, 0); l >= 0; l = engine.nextUnvisited(car, l + 1))
+            if (l != engine.getEnd(car)) out[k++] = l;
+        return out;
+    }
+
+}
@@ -0,0 +1,48 @@
+package main.java;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Times the gaps between JavaFX pulses. While it runs there is a pulse every frame, so anything
+ * well over a frame (16.7 ms at 60 Hz) is a frame that was dropped because the FX thread was busy.
+ */
+public class FrameMonitor extends AnimationTimer {
+
+    /**
+     * The time of the last pulse, -1 before the first one.
+     */
+    private long lastPulse = -1;
+
+    /**
+     * Where the gaps are counted.
+     */
+    private final LatencyHistogram frames;
+
+    /**
+     * @param frames Where the gaps are counted.
+     */
+    public FrameMonitor(LatencyHistogram frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Counts the time since the last pulse.
+     *
+     * @param now The time of this pulse in nanoseconds.
+     */
+    @Override
+    public void handle(long now) {
+        if (lastPulse >= 0) frames.record(now - lastPulse);
+        lastPulse = now;
+    }
+
+    /**
+     * Stops timing. Starting again doesn't count the time in between.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        lastPulse = -1;
+    }
+
+}
@@ -0,0 +1,73 @@
+package main.java;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Hands values from any thread to the JavaFX application thread in batches. At most one
+ * Platform.runLater is outstanding at a time, and it takes everything published until it runs,
+ * so however fast values arrive the application thread sees them once per pulse at most.
+ *
+ * @param <T> The type of the values. They are read on another thread, so should be immutable.
+ */
+public class FxPublisher<T> {
+
+    /**
+     * The values published and not yet applied.
+     */
+    private final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True while a batch is waiting to run.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The batch being applied. Only used on the application thread.
+     */
+    private final List<T> batch = new ArrayList<>();
+
+    /**
+     * Applies each batch on the application thread.
+     */
+    private final Consumer<List<T>> apply;
+
+    /**
+     * @param apply Applies each batch, in the order the values were published, on the application thread.
+     *              The list is only valid during the call.
+     */
+    public FxPublisher(Consumer<List<T>> apply) {
+        this.apply = apply;
+    }
+
+    /**
+     * Queues a value for the next batch. Can be called from any thread.
+     *
+     * @param value The value.
+     */
+    public void publish(T value) {
+        pending.add(value);
+        if (scheduled.compareAndSet(false, true)) Platform.runLater(this::drain);
+    }
+
+    /**
+     * Applies everything published so far.
+     */
+    private void drain() {
+        // Cleared first, so a value published from here on gets a batch of its own if this one misses it.
+        scheduled.set(false);
+        for (T value = pending.poll(); value != null; value = pending.poll()) batch.add(value);
+        if (batch.isEmpty()) return;
+        try {
+            apply.accept(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * The game-logic thread of a track, and what it does besides taking the turns: recording the race from
+ * its RaceEventRing, and planning the turns of computer controlled cars. Track and CanvasTrack each play
+ * their race on one.
+ */
+public class GameLogic {
+
+    /**
+     * The thread, a daemon so it never keeps the program alive.
+     */
+    private final ExecutorService thread;
+
+    /**
+     * The race. Only used on the game-logic thread.
+     */
+    private final RaceEngine engine;
+
+    /**
+     * How the race was set up, for recording it.
+     */
+    private final ReplayLog.Header header;
+
+    /**
+     * Where every move of the race is published for spectators.
+     */
+    private final RaceEventRing events;
+
+    /**
+     * Takes the turns the computer controlled cars choose.
+     */
+    private final TurnTaker taker;
+
+    /**
+     * Records every turn from the events, null when the race is not recorded.
+     */
+    private ReplayRecorder log;
+
+    /**
+     * The driver of each computer controlled car, null for cars driven by a player.
+     */
+    private final Driver[] drivers;
+
+    /**
+     * Plans the turns of computer controlled cars on worker threads, null until there are any.
+     */
+    private BotPlanner planner;
+
+    /**
+     * How long a computer controlled car may think about each turn, in milliseconds.
+     */
+    private long botBudget;
+
+    /**
+     * Starts playing a race. Its moves are published to a RaceEventRing from now on.
+     *
+     * @param engine The race, not to be touched off the game-logic thread from now on.
+     * @param header How the race was set up.
+     * @param taker  Takes the turns the computer controlled cars choose, called on a worker thread.
+     */
+    public GameLogic(RaceEngine engine, ReplayLog.Header header, TurnTaker taker) {
+        this.engine = engine;
+        this.header = header;
+        this.taker = taker;
+        events = new RaceEventRing(RaceEventRing.DEFAULT_SIZE);
+        engine.setEvents(events);
+        drivers = new Driver[engine.getNumCars()];
+        thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "game-logic");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs a command on the game-logic thread. Dropped once stopped.
+     *
+     * @param command The command.
+     */
+    public void later(Runnable command) {
+        try {
+            thread.execute(command);
+        } catch (RejectedExecutionException e) {
+            // Stopped, nothing more to do.
+        }
+    }
+
+    /**
+     * Records every turn from now on. Called before any turn is taken.
+     *
+     * @param file The file to record to, replaced if it exists.
+     * @throws IOException if the file can't be written.
+     */
+    public void record(Path file) throws IOException {
+        closeLog();
+        log = new ReplayRecorder(events, file, header);
+    }
+
+    /**
+     * Writes the turn just taken to the log, so the log holds every turn even if the game is closed
+     * midway. If it can't be written, recording stops and the game goes on. Runs on the game-logic thread.
+     */
+    public void drainLog() {
+        if (log == null) return;
+        try {
+            log.drain();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeLog();
+        }
+    }
+
+    /**
+     * Writes out and closes the log, if the race is being recorded. Runs on the game-logic thread.
+     */
+    public void closeLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        log = null;
+    }
+
+    /**
+     * Makes the cars before a given one computer controlled, and plans a turn if one of them has it.
+     *
+     * @param numBots      The number of computer controlled cars.
+     * @param last         The car after the last computer controlled one.
+     * @param driver       Creates a driver for each computer controlled car.
+     * @param budgetMillis How long a computer controlled car may think about each turn.
+     */
+    public void setBots(int numBots, int last, Supplier<Driver> driver, long budgetMillis) {
+        for (int j = Math.max(0, last - numBots); j < last; j++) drivers[j] = driver.get();
+        botBudget = budgetMillis;
+        if (numBots > 0 && planner == null) planner = new BotPlanner();
+        later(this::planBot);
+    }
+
+    /**
+     * @param car The car.
+     * @return True if the car is computer controlled.
+     */
+    public boolean isBot(int car) {
+        return drivers[car] != null;
+    }
+
+    /**
+     * If a computer controlled car has the turn, lets its driver choose a location on a worker thread
+     * and hands it to the TurnTaker. Runs on the game-logic thread.
+     */
+    public void planBot() {
+        int car = engine.getActiveCar();
+        if (drivers[car] == null || engine.isOver()) return;
+        long start = System.nanoTime();
+        planner.plan(engine, car, drivers[car], botBudget, location -> taker.take(car, location, start));
+    }
+
+    /**
+     * Cancels any computer controlled turn in progress, finishes the log and lets the thread end.
+     */
+    public void stop() {
+        if (planner != null) planner.shutdown();
+        later(this::closeLog);
+        thread.shutdown();
+    }
+
+    /**
+     * Takes a turn chosen for a car.
+     */
+    public interface TurnTaker {
+
+        /**
+         * @param car      The car.
+         * @param location Where it wants to move to.
+         * @param start    When the turn was asked for, from System.nanoTime().
+         */
+        void take(int car, int location, long start);
+    }
+
+}
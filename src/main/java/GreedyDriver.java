@@ -0,0 +1,34 @@
+package main.java;
+
+/**
+ * Always drives the quickest leg available.
+ */
+public class GreedyDriver implements Driver {
+
+    /**
+     * @return The location that takes the car the least time to reach.
+     */
+    @Override
+    public int chooseNext(RaceEngine engine, int car, long deadline) {
+        int from = engine.getCurrent(car);
+        int best = -1;
+        double bestTime = Double.POSITIVE_INFINITY;
+        for (int l : Driver.remaining(engine, car)) {
+            double t = engine.getLegTime(car, from, l);
+            if (t < bestTime) {
+                bestTime = t;
+                best = l;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The name of the driver.
+     */
+    @Override
+    public String toString() {
+        return "Greedy";
+    }
+
+}
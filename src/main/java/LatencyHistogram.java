@@ -0,0 +1,153 @@
+package main.java;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took, in nanoseconds, in the manner of HdrHistogram: values below 128 ns
+ * are counted exactly and every larger power of two is split into 64 buckets, so any percentile is
+ * within 1.6% of the truth, from 1 ns to over four hours, in a fixed 2496 counters.
+ * Recording allocates nothing and can be done from any thread while others read.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    /**
+     * The number of buckets each power of two is split into, and the number of bits that takes.
+     */
+    private static final int SUB_BUCKETS = 64, SUB_BITS = 6;
+
+    /**
+     * The largest value that can be told apart from larger ones, about 4.9 hours.
+     */
+    private static final long MAX_VALUE = (1L << 44) - 1;
+
+    /**
+     * The number of buckets.
+     */
+    private static final int BUCKETS = (2 + 44 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    /**
+     * What is being timed, as shown in reports.
+     */
+    private final String name;
+
+    /**
+     * How many values fell in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * How many values there are, their sum and the largest.
+     */
+    private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+    /**
+     * @param name What is being timed.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return What is being timed.
+     */
+    public String getName() { return name; }
+
+    /**
+     * @param nanos How long something took.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(Math.min(nanos, MAX_VALUE)));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @param start When it started, from System.nanoTime().
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * @return The bucket a value falls in.
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return The largest value that falls in a bucket.
+     */
+    private static long highestIn(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long top = SUB_BUCKETS + (index - 2 * SUB_BUCKETS) % SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value that percentile of the values are at or below, in nanoseconds, 0 if there are none.
+     */
+    public long getValueAt(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long wanted = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) return Math.min(highestIn(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() { return count.get(); }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / 1e6 / n;
+    }
+
+    @Override
+    public double getMaxMillis() { return max.get() / 1e6; }
+
+    @Override
+    public double getP50Millis() { return getValueAt(50) / 1e6; }
+
+    @Override
+    public double getP90Millis() { return getValueAt(90) / 1e6; }
+
+    @Override
+    public double getP99Millis() { return getValueAt(99) / 1e6; }
+
+    @Override
+    public double getP999Millis() { return getValueAt(99.9) / 1e6; }
+
+    /**
+     * Forgets every value. Values recorded at the same time may be half forgotten.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return One line with the count, mean, percentiles and maximum in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-10s count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                name, getCount(), getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(),
+                getP999Millis(), getMaxMillis());
+    }
+
+}
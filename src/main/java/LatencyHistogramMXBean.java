@@ -0,0 +1,47 @@
+package main.java;
+
+/**
+ * What a LatencyHistogram shows over JMX, in milliseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+    /**
+     * @return How many values have been recorded.
+     */
+    long getCount();
+
+    /**
+     * @return The mean value.
+     */
+    double getMeanMillis();
+
+    /**
+     * @return The largest value.
+     */
+    double getMaxMillis();
+
+    /**
+     * @return The median.
+     */
+    double getP50Millis();
+
+    /**
+     * @return The 90th percentile.
+     */
+    double getP90Millis();
+
+    /**
+     * @return The 99th percentile.
+     */
+    double getP99Millis();
+
+    /**
+     * @return The 99.9th percentile.
+     */
+    double getP999Millis();
+
+    /**
+     * Forgets every value.
+     */
+    void reset();
+}
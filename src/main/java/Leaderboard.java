@@ -0,0 +1,164 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * The live ranking of a race: an indexed binary min-heap of cars keyed on their projected finishing time.
+ * Because every car knows where it sits in the heap, a car's key can be changed in O(log n) and the
+ * leader read in O(1). Ties go to the car with the lower identifier.
+ */
+public class Leaderboard {
+
+    /**
+     * The cars, in heap order.
+     */
+    private int[] heap;
+
+    /**
+     * Where each car sits in the heap, -1 if it is not ranked.
+     */
+    private int[] position;
+
+    /**
+     * The projected finishing time of each car.
+     */
+    private double[] projected;
+
+    /**
+     * The number of ranked cars.
+     */
+    private int size;
+
+    /**
+     * A heap reused to read out the standings.
+     */
+    private int[] scratch;
+
+    /**
+     * @param capacity The number of cars that can be ranked.
+     */
+    public Leaderboard(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        projected = new double[capacity];
+        scratch = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Copies another ranking.
+     *
+     * @param other The ranking to copy.
+     */
+    public Leaderboard(Leaderboard other) {
+        heap = other.heap.clone();
+        position = other.position.clone();
+        projected = other.projected.clone();
+        scratch = new int[heap.length];
+        size = other.size;
+    }
+
+    /**
+     * Ranks a car, or re-ranks it if its projection changed.
+     *
+     * @param car  The car.
+     * @param time The car's projected finishing time.
+     */
+    public void update(int car, double time) {
+        int at = position[car];
+        if (at < 0) {
+            at = size++;
+            heap[at] = car;
+            position[car] = at;
+            projected[car] = time;
+            up(at);
+            return;
+        }
+        double old = projected[car];
+        projected[car] = time;
+        if (time < old) up(at);
+        else down(at);
+    }
+
+    /**
+     * @return The car projected to finish first, or -1 if no car is ranked.
+     */
+    public int getLeader() {
+        return size > 0 ? heap[0] : -1;
+    }
+
+    /**
+     * @param car The car.
+     * @return The car's projected finishing time.
+     */
+    public double getProjected(int car) {
+        return projected[car];
+    }
+
+    /**
+     * @return The number of ranked cars.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Lists the cars from first to last, in O(n log n) without allocating.
+     *
+     * @param out Receives the cars in order. Must hold at least size() cars.
+     * @return The number of cars written.
+     */
+    public int getStandings(int[] out) {
+        System.arraycopy(heap, 0, scratch, 0, size);
+        for (int n = size; n > 0; n--) {
+            out[size - n] = scratch[0];
+            scratch[0] = scratch[n - 1];
+            // Sift down within the scratch heap of n - 1 cars.
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1, smallest = i;
+                if (l < n - 1 && less(scratch[l], scratch[smallest])) smallest = l;
+                if (l + 1 < n - 1 && less(scratch[l + 1], scratch[smallest])) smallest = l + 1;
+                if (smallest == i) break;
+                int tmp = scratch[i];
+                scratch[i] = scratch[smallest];
+                scratch[smallest] = tmp;
+                i = smallest;
+            }
+        }
+        return size;
+    }
+
+    private boolean less(int a, int b) {
+        return projected[a] < projected[b] || (projected[a] == projected[b] && a < b);
+    }
+
+    private void up(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(heap[i], heap[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void down(int i) {
+        while (true) {
+            int l = 2 * i + 1, smallest = i;
+            if (l < size && less(heap[l], heap[smallest])) smallest = l;
+            if (l + 1 < size && less(heap[l + 1], heap[smallest])) smallest = l + 1;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i], b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        position[b] = i;
+        position[a] = j;
+    }
+
+}
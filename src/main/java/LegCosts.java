@@ -0,0 +1,131 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * The time of every leg for one car, filled in as legs are asked for. A car's components never change,
+ * so a leg always costs the same and is only priced once. Unpriced legs hold NaN.
+ * Tracks with more than MAX_CACHED locations are priced on every call, as the table would be too big.
+ * Copies of a race share their cars' tables, bot planners included. A table is filled in before it is
+ * published through a volatile field, so no thread sees one half set up. Every writer writes the same
+ * value, and the counters are only approximate when several threads read at once.
+ */
+public class LegCosts {
+
+    /**
+     * The most locations a table is kept for, 1024 of them take 8 MB per car.
+     */
+    public static final int MAX_CACHED = 1024;
+
+    /**
+     * The cars of the race and the car priced.
+     */
+    private CarState cars;
+    private int car;
+
+    /**
+     * The distance between every pair of locations.
+     */
+    private DistanceMatrix distances;
+
+    /**
+     * The number of locations.
+     */
+    private int n;
+
+    /**
+     * The time of every leg, row-major, NaN until priced. Null until the first leg is asked for.
+     */
+    private volatile double[] cost;
+
+    /**
+     * True once toArray has priced every leg of the table.
+     */
+    private volatile boolean complete;
+
+    /**
+     * How many legs were found in the table, and how many had to be priced.
+     */
+    private long hits, misses;
+
+    /**
+     * @param cars      The cars of the race.
+     * @param car       The car to price legs for.
+     * @param distances The distance between every pair of locations.
+     */
+    public LegCosts(CarState cars, int car, DistanceMatrix distances) {
+        this.cars = cars;
+        this.car = car;
+        this.distances = distances;
+        n = distances.size();
+    }
+
+    /**
+     * @param from The location the leg starts at.
+     * @param to   The location the leg ends at.
+     * @return The time it takes the car to drive the leg.
+     */
+    public double get(int from, int to) {
+        if (n > MAX_CACHED) {
+            misses++;
+            return cars.calculateTime(car, distances.get(from, to));
+        }
+        double[] cost = this.cost;
+        if (cost == null) {
+            cost = new double[n * n];
+            Arrays.fill(cost, Double.NaN);
+            for (int i = 0; i < n; i++) cost[i * n + i] = 0;
+            this.cost = cost;
+        }
+        double t = cost[from * n + to];
+        if (t == t) {
+            hits++;
+            return t;
+        }
+        misses++;
+        t = cars.calculateTime(car, distances.get(from, to));
+        // Legs only depend on their distance, so both directions cost the same.
+        cost[from * n + to] = t;
+        cost[to * n + from] = t;
+        return t;
+    }
+
+    /**
+     * Prices the whole table at once with LegKernel, a row at a time, the first time it's called.
+     * Not counted as hits or misses.
+     *
+     * @return The time of every leg, row-major. When the track is small enough to keep a table this is
+     *         the table itself, which must not be changed.
+     */
+    public double[] toArray() {
+        if (complete) return cost;
+        double[] all = new double[n * n];
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) row[j] = distances.get(i, j);
+            LegKernel.price(row, 0, n, cars.getEngine(car), cars.getTires(car), cars.getWeight(car),
+                    cars.getBoost(car), cars.isBoosted(car), all, i * n);
+        }
+        if (n <= MAX_CACHED) {
+            cost = all;
+            complete = true;
+        }
+        return all;
+    }
+
+    /**
+     * @return The number of locations.
+     */
+    public int size() { return n; }
+
+    /**
+     * @return How many legs were found already priced.
+     */
+    public long getHits() { return hits; }
+
+    /**
+     * @return How many legs had to be priced.
+     */
+    public long getMisses() { return misses; }
+
+}
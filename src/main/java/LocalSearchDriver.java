@@ -0,0 +1,143 @@
+package main.java;
+
+/**
+ * Plans the whole rest of the route and drives its first leg.
+ * The plan starts out greedy and is improved with 2-opt (reversing a stretch) and Or-opt
+ * (moving a stretch of up to three locations elsewhere) until nothing improves or time runs out.
+ * The clock is looked at every CHECK_EVERY moves tried, and while the greedy plan is built, so the
+ * deadline holds on any track.
+ */
+public class LocalSearchDriver implements Driver {
+
+    /**
+     * How many moves are tried between looks at the clock, a power of two.
+     */
+    private static final int CHECK_EVERY = 256;
+
+    /**
+     * @return The first location of the improved plan.
+     */
+    @Override
+    public int chooseNext(RaceEngine engine, int car, long deadline) {
+        int[] left = Driver.remaining(engine, car);
+        if (left.length == 1) return left[0];
+        int[] route = plan(engine, car, left, deadline);
+        return route[1];
+    }
+
+    /**
+     * @param engine   The race.
+     * @param car      The car.
+     * @param left     The locations still to visit before the end.
+     * @param deadline The System.nanoTime() by which to stop improving.
+     * @return The route from the car's current location through every location left to its end.
+     */
+    static int[] plan(RaceEngine engine, int car, int[] left, long deadline) {
+        int n = left.length + 2;
+        int[] route = new int[n];
+        route[0] = engine.getCurrent(car);
+        route[n - 1] = engine.getEnd(car);
+        boolean[] used = new boolean[left.length];
+        for (int pos = 1; pos < n - 1; pos++) {
+            // Out of time, the rest of the plan is left in any order. Its first leg is already the quickest.
+            if (pos > 1 && Driver.outOfTime(deadline)) {
+                for (int i = 0; i < left.length; i++) if (!used[i]) route[pos++] = left[i];
+                return route;
+            }
+            int best = -1;
+            double bestTime = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < left.length; i++) {
+                if (used[i]) continue;
+                double t = engine.getLegTime(car, route[pos - 1], left[i]);
+                if (t < bestTime) {
+                    bestTime = t;
+                    best = i;
+                }
+            }
+            used[best] = true;
+            route[pos] = left[best];
+        }
+        boolean improved = true;
+        while (improved && !Driver.outOfTime(deadline))
+            improved = twoOpt(engine, car, route, deadline) | orOpt(engine, car, route, deadline);
+        return route;
+    }
+
+    /**
+     * Reverses any stretch between the fixed ends that makes the route quicker. A leg takes as long
+     * either way, so only the two legs around the stretch change.
+     */
+    private static boolean twoOpt(RaceEngine engine, int car, int[] route, long deadline) {
+        boolean improved = false;
+        int n = route.length;
+        for (int i = 1; i < n - 2; i++) {
+            for (int j = i + 1; j < n - 1; j++) {
+                if ((j & (CHECK_EVERY - 1)) == 0 && Driver.outOfTime(deadline)) return improved;
+                double before = engine.getLegTime(car, route[i - 1], route[i]) + engine.getLegTime(car, route[j], route[j + 1]);
+                double after = engine.getLegTime(car, route[i - 1], route[j]) + engine.getLegTime(car, route[i], route[j + 1]);
+                if (after < before - 1e-12) {
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int tmp = route[a];
+                        route[a] = route[b];
+                        route[b] = tmp;
+                    }
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves a stretch of one to three locations to wherever it is quickest.
+     */
+    private static boolean orOpt(RaceEngine engine, int car, int[] route, long deadline) {
+        boolean improved = false;
+        int n = route.length;
+        for (int len = 1; len <= 3; len++) {
+            for (int i = 1; i + len < n; i++) {
+                int last = i + len - 1;
+                double removed = engine.getLegTime(car, route[i - 1], route[i])
+                        + engine.getLegTime(car, route[last], route[last + 1])
+                        - engine.getLegTime(car, route[i - 1], route[last + 1]);
+                for (int j = 0; j < n - 1; j++) {
+                    if ((j & (CHECK_EVERY - 1)) == 0 && Driver.outOfTime(deadline)) return improved;
+                    if (j >= i - 1 && j <= last) continue;
+                    double added = engine.getLegTime(car, route[j], route[i])
+                            + engine.getLegTime(car, route[last], route[j + 1])
+                            - engine.getLegTime(car, route[j], route[j + 1]);
+                    if (added < removed - 1e-12) {
+                        move(route, i, len, j);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves route[i, i + len) so that it follows route[j].
+     */
+    private static void move(int[] route, int i, int len, int j) {
+        int[] segment = new int[len];
+        System.arraycopy(route, i, segment, 0, len);
+        if (j < i) {
+            System.arraycopy(route, j + 1, route, j + 1 + len, i - j - 1);
+            System.arraycopy(segment, 0, route, j + 1, len);
+        } else {
+            System.arraycopy(route, i + len, route, i, j - i - len + 1);
+            System.arraycopy(segment, 0, route, j - len + 1, len);
+        }
+    }
+
+    /**
+     * @return The name of the driver.
+     */
+    @Override
+    public String toString() {
+        return "Local search";
+    }
+
+}
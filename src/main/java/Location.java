@@ -1,69 +1,69 @@
 package main.java;
 
-import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.ImagePattern;
 import javafx.scene.shape.Circle;
 
-import java.net.URL;
-
 /**
- * Creates a destination for use within the track.
+ * Shows a destination of the track. Its position, name and flags are kept in a LocationState,
+ * the node only projects them.
  */
 public class Location extends Circle {
 
     /**
-     * The name identifier of the location
+     * The locations of the track. Hold this location's position and flags.
      */
-    private String name;
+    private LocationState state;
 
     /**
-     * Keeps track within the running loop of each turn whether
-     * a location has been clicked
-     * a location can be clicked (active)
+     * The index of the location within the track.
      */
-    private boolean clicked, active;
+    private int id;
 
     /**
-     * @param x      The x coordinate of the location
-     * @param y      The y coordinate of the location
+     * @param state  The locations of the track
+     * @param id     The index of the location within the track
      * @param offset The width and height of the location
-     * @param name   THe name identifier of the location
      */
-    public Location(double x, double y, double offset, String name) { //, Map<Location, Integer> neighbors) {
-        super(x, y, offset);
-        this.name = name;
+    public Location(LocationState state, int id, double offset) {
+        super(state.getX(id), state.getY(id), offset);
+        this.state = state;
+        this.id = id;
         this.setFill(Color.LIMEGREEN);
-        clicked = false;
-        active = true;
     }
 
     /**
      * @return the name of the location
      */
     public String getName() {
-        return name;
+        return state.getName(id);
+    }
+
+    /**
+     * @return The index of the location within the track
+     */
+    public int getIdentifier() {
+        return id;
     }
 
     /**
      * @return True if the location can be selected, otherwise false
      */
     public boolean isActive() {
-        return active;
+        return state.isActive(id);
     }
 
     /**
      * @return True if the location has been clicked, otherwise false
      */
     public boolean getClicked() {
-        return clicked;
+        return state.isClicked(id);
     }
 
     /**
      * @param in The value for "clicked" to be changed to.
      */
     public void setClicked(boolean in) {
-        clicked = in;
+        state.setClicked(id, in);
     }
 
     /**
@@ -71,10 +71,10 @@ public class Location extends Circle {
      * @param orange True if the location to be set is the end location for a car.
      */
     public void setActive(boolean in, boolean orange) {
-        active = in;
+        state.setActive(id, in);
         if (orange) this.setFill(Color.ORANGE); // TODO: Find image for this representation ?
         else {
-            if (!active) this.setFill(Color.CRIMSON);
+            if (!in) this.setFill(Color.CRIMSON);
             else this.setFill(Color.LIMEGREEN);
         }
     }
@@ -83,8 +83,7 @@ public class Location extends Circle {
      * Indicates the last location.
      */
     public void setLastColor() {
-        URL green = getClass().getResource("/main/resources/images/greengif.gif");
-        this.setFill(new ImagePattern(new Image(green.toString())));
+        this.setFill(Assets.pattern("greengif.gif"));
     }
 
     /**
@@ -94,20 +93,14 @@ public class Location extends Circle {
      * @return the hypotenuse of the difference of x and y values.
      */
     public double getDistanceToLocation(Location location) {
-        double tmpX = location.getCenterX();
-        double tmpY = location.getCenterY();
-        double xThis = this.getCenterX();
-        double yThis = this.getCenterY();
-        double a = (tmpY - yThis) > 0 ? tmpY - yThis : yThis - tmpY;
-        double b = (tmpX - xThis) > 0 ? tmpX - xThis : xThis - tmpX;
-        return Math.hypot(a, b) / 100;
+        return state.getDistance(id, location.id);
     }
 
     /**
      * @return The string representation of the car.
      */
     public String toString() {
-        return name + "\tActive: " + active + "\tClicked: " + clicked;
+        return getName() + "\tActive: " + isActive() + "\tClicked: " + getClicked();
     }
 
 }
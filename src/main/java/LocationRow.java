@@ -0,0 +1,51 @@
+package main.java;
+
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * A row of the locations table in the stats panel. Remembers the distance it shows, so the cell is
+ * only reformatted and redrawn when the distance actually changed.
+ */
+public class LocationRow {
+
+    /**
+     * The values shown.
+     */
+    private ReadOnlyStringWrapper name, distance;
+
+    /**
+     * The distance last shown, to tell whether it changed.
+     */
+    private double lastDistance = -1;
+
+    /**
+     * @param nameIn The name of the location.
+     */
+    public LocationRow(String nameIn) {
+        name = new ReadOnlyStringWrapper(nameIn);
+        distance = new ReadOnlyStringWrapper();
+    }
+
+    /**
+     * @param distanceIn The distance from the active car's current location.
+     * @return True if the distance shown changed.
+     */
+    public boolean update(double distanceIn) {
+        if (distanceIn == lastDistance) return false;
+        lastDistance = distanceIn;
+        distance.set(StatsFormat.tenths(distanceIn));
+        return true;
+    }
+
+    /**
+     * @return The name of the location.
+     */
+    public ReadOnlyStringProperty nameProperty() { return name.getReadOnlyProperty(); }
+
+    /**
+     * @return The distance from the active car's current location.
+     */
+    public ReadOnlyStringProperty distanceProperty() { return distance.getReadOnlyProperty(); }
+
+}
@@ -0,0 +1,99 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Every location of a track as parallel arrays indexed by location id, instead of an object per location.
+ * Location nodes only show what is kept here, so a track can be held without a scene graph.
+ */
+public class LocationState {
+
+    /**
+     * Flags of a location: it has been driven to, and it can be clicked by the active car.
+     */
+    private static final byte CLICKED = 1, ACTIVE = 2;
+
+    /**
+     * The center of each location.
+     */
+    private double[] x, y;
+
+    /**
+     * The flags of each location.
+     */
+    private byte[] flags;
+
+    /**
+     * Every location starts out active and not clicked.
+     *
+     * @param locationX The x coordinate of each location's center.
+     * @param locationY The y coordinate of each location's center.
+     */
+    public LocationState(double[] locationX, double[] locationY) {
+        x = locationX;
+        y = locationY;
+        flags = new byte[locationX.length];
+        Arrays.fill(flags, ACTIVE);
+    }
+
+    /**
+     * @return The number of locations.
+     */
+    public int size() { return x.length; }
+
+    /**
+     * @param location The location.
+     * @return The x coordinate of its center.
+     */
+    public double getX(int location) { return x[location]; }
+
+    /**
+     * @param location The location.
+     * @return The y coordinate of its center.
+     */
+    public double getY(int location) { return y[location]; }
+
+    /**
+     * @param location The location.
+     * @return The name of the location, made when asked for rather than kept.
+     */
+    public String getName(int location) { return "Location " + location; }
+
+    /**
+     * @param from The location to get the distance from.
+     * @param to   The location to get the distance to.
+     * @return The distance between them, scaled the same as DistanceMatrix.
+     */
+    public double getDistance(int from, int to) {
+        return Math.hypot(x[to] - x[from], y[to] - y[from]) / 100;
+    }
+
+    /**
+     * @param location The location.
+     * @return True if a car has driven to it.
+     */
+    public boolean isClicked(int location) { return (flags[location] & CLICKED) != 0; }
+
+    /**
+     * @param location The location.
+     * @param in       True if a car has driven to it.
+     */
+    public void setClicked(int location, boolean in) { set(location, CLICKED, in); }
+
+    /**
+     * @param location The location.
+     * @return True if the active car can drive to it.
+     */
+    public boolean isActive(int location) { return (flags[location] & ACTIVE) != 0; }
+
+    /**
+     * @param location The location.
+     * @param in       True if the active car can drive to it.
+     */
+    public void setActive(int location, boolean in) { set(location, ACTIVE, in); }
+
+    private void set(int location, byte flag, boolean in) {
+        flags[location] = (byte) (in ? flags[location] | flag : flags[location] & ~flag);
+    }
+
+}
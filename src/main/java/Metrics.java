@@ -0,0 +1,169 @@
+package main.java;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where the time goes while the game runs: a LatencyHistogram per thing worth timing, shown over JMX
+ * under main.java:type=Metrics, and written to a file on exit when the game is started with
+ * -Dracegame.metrics=&lt;file&gt;. Every turn is also a Flight Recorder event where the running Java has them
+ * and TurnEvent, which is built from src/jfr/java so the game itself still builds against any Java 8, is there.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * The system property naming the file the report is written to on exit.
+     */
+    public static final String DUMP_PROPERTY = "racegame.metrics";
+
+    /**
+     * Handling a turn, from the click or the bot's choice to the track being up to date.
+     */
+    public static final LatencyHistogram TURN = new LatencyHistogram("turn");
+
+    /**
+     * Bringing the stats panel up to date, or on a CanvasTrack repainting the locations and the active car.
+     */
+    public static final LatencyHistogram STATS = new LatencyHistogram("stats");
+
+    /**
+     * Setting a track up, from generating it to having it on screen.
+     */
+    public static final LatencyHistogram TRACK = new LatencyHistogram("track");
+
+    /**
+     * Starting a car on its way, or on a CanvasTrack drawing its leg and repainting it where it arrived.
+     */
+    public static final LatencyHistogram ANIMATION = new LatencyHistogram("animation");
+
+    /**
+     * The gaps between JavaFX pulses, while a FrameMonitor runs.
+     */
+    public static final LatencyHistogram FRAME = new LatencyHistogram("frame");
+
+    /**
+     * Every histogram, in the order they are reported.
+     */
+    private static final List<LatencyHistogram> ALL = Arrays.asList(TURN, STATS, TRACK, ANIMATION, FRAME);
+
+    /**
+     * Commits a TurnEvent, null if the running Java has no Flight Recorder events or TurnEvent wasn't built.
+     */
+    private static final MethodHandle TURN_EVENT = findTurnEvent();
+
+    /**
+     * True once the beans are registered.
+     */
+    private static boolean registered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Shows the histograms over JMX. Does nothing after the first time.
+     */
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Metrics(), new ObjectName("main.java:type=Metrics"));
+            for (LatencyHistogram histogram : ALL)
+                server.registerMBean(histogram, new ObjectName("main.java:type=Metrics,name=" + histogram.getName()));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Counts a turn that has been handled.
+     *
+     * @param car       The car that moved.
+     * @param location  The location it moved to.
+     * @param cars      The number of cars in the race.
+     * @param locations The number of locations on the track.
+     * @param start     When handling the turn started, from System.nanoTime().
+     */
+    public static void turn(int car, int location, int cars, int locations, long start) {
+        long nanos = System.nanoTime() - start;
+        TURN.record(nanos);
+        if (TURN_EVENT == null) return;
+        try {
+            TURN_EVENT.invokeExact(car, location, cars, locations, nanos);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return One line per histogram.
+     */
+    public static String[] report() {
+        String[] lines = new String[ALL.size()];
+        for (int i = 0; i < lines.length; i++) lines[i] = ALL.get(i).toString();
+        return lines;
+    }
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param file Where to write it.
+     * @throws IOException if the file can't be written.
+     */
+    public static void dump(Path file) throws IOException {
+        Files.write(file, Arrays.asList(report()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the report to the file named by DUMP_PROPERTY, if there is one.
+     */
+    public static void dumpOnExit() {
+        String file = System.getProperty(DUMP_PROPERTY);
+        if (file == null) return;
+        try {
+            dump(Paths.get(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String[] getReport() {
+        return report();
+    }
+
+    @Override
+    public void dump(String file) throws IOException {
+        dump(Paths.get(file));
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : ALL) histogram.reset();
+    }
+
+    /**
+     * @return TurnEvent.emit, or null if Flight Recorder events can't be committed.
+     */
+    private static MethodHandle findTurnEvent() {
+        try {
+            return MethodHandles.lookup().findStatic(Class.forName("main.java.TurnEvent"), "emit",
+                    MethodType.methodType(void.class, int.class, int.class, int.class, int.class, long.class));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+}
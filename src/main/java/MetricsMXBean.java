@@ -0,0 +1,27 @@
+package main.java;
+
+import java.io.IOException;
+
+/**
+ * What Metrics shows over JMX besides the histograms themselves.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return One line per histogram.
+     */
+    String[] getReport();
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param file Where to write it.
+     * @throws IOException if the file can't be written.
+     */
+    void dump(String file) throws IOException;
+
+    /**
+     * Forgets every value of every histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,143 @@
+package main.java;
+
+import java.util.Random;
+
+/**
+ * Tries the locations it could drive to next by finishing the race from there many times with a
+ * randomized greedy policy, and drives to the one whose best finish was quickest. Only the CANDIDATES
+ * nearest locations are tried, and a rollout gives up as soon as time runs out, so the deadline holds
+ * on any track. A candidate that never finished a rollout loses to the quickest leg.
+ */
+public class MonteCarloDriver implements Driver {
+
+    /**
+     * How often a rollout takes a random leg instead of the quickest one.
+     */
+    private static final double EXPLORE = 0.2;
+
+    /**
+     * The most locations tried as the next one, the quickest legs first.
+     */
+    private static final int CANDIDATES = 32;
+
+    /**
+     * How many legs a rollout prices between looks at the clock.
+     */
+    private static final int CHECK_EVERY = 512;
+
+    /**
+     * Random number generator for the rollouts.
+     */
+    private Random rand;
+
+    /**
+     * @param rand Random number generator for the rollouts.
+     */
+    public MonteCarloDriver(Random rand) {
+        this.rand = rand;
+    }
+
+    /**
+     * Creates a driver with an unseeded generator.
+     */
+    public MonteCarloDriver() {
+        this(new Random());
+    }
+
+    /**
+     * @return The candidate with the quickest rollout, or the quickest leg if none finished one in time.
+     */
+    @Override
+    public int chooseNext(RaceEngine engine, int car, long deadline) {
+        int[] left = Driver.remaining(engine, car);
+        if (left.length == 1) return left[0];
+        int from = engine.getCurrent(car);
+        int end = engine.getEnd(car);
+        int[] candidates = nearest(engine, car, from, left);
+        double[] best = new double[candidates.length];
+        for (int c = 0; c < candidates.length; c++) best[c] = Double.POSITIVE_INFINITY;
+        int[] pool = new int[left.length];
+        // The candidates take turns until time runs out.
+        search:
+        while (true) {
+            for (int c = 0; c < candidates.length; c++) {
+                if (Driver.outOfTime(deadline)) break search;
+                double rest = rollout(engine, car, left, candidates[c], end, pool, deadline);
+                if (rest != rest) break search;
+                double t = engine.getLegTime(car, from, left[candidates[c]]) + rest;
+                if (t < best[c]) best[c] = t;
+            }
+        }
+        int choice = 0;
+        for (int c = 1; c < candidates.length; c++) if (best[c] < best[choice]) choice = c;
+        return left[candidates[choice]];
+    }
+
+    /**
+     * @return The indices in left of the CANDIDATES locations quickest to drive to, quickest first.
+     */
+    private static int[] nearest(RaceEngine engine, int car, int from, int[] left) {
+        int count = Math.min(CANDIDATES, left.length);
+        int[] index = new int[count];
+        double[] time = new double[count];
+        int size = 0;
+        for (int i = 0; i < left.length; i++) {
+            double t = engine.getLegTime(car, from, left[i]);
+            if (size == count && t >= time[size - 1]) continue;
+            int at = size == count ? size - 1 : size++;
+            for (; at > 0 && time[at - 1] > t; at--) {
+                time[at] = time[at - 1];
+                index[at] = index[at - 1];
+            }
+            time[at] = t;
+            index[at] = i;
+        }
+        return index;
+    }
+
+    /**
+     * Finishes the race from left[first], mostly greedily.
+     *
+     * @return The time from left[first] to the end, NaN if time ran out first.
+     */
+    private double rollout(RaceEngine engine, int car, int[] left, int first, int end, int[] pool, long deadline) {
+        int size = 0;
+        for (int i = 0; i < left.length; i++) if (i != first) pool[size++] = left[i];
+        int at = left[first];
+        double time = 0;
+        int priced = 0;
+        while (size > 0) {
+            if (priced >= CHECK_EVERY) {
+                if (Driver.outOfTime(deadline)) return Double.NaN;
+                priced = 0;
+            }
+            int pick;
+            if (rand.nextDouble() < EXPLORE) pick = rand.nextInt(size);
+            else {
+                pick = 0;
+                double bestTime = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < size; i++) {
+                    double t = engine.getLegTime(car, at, pool[i]);
+                    if (t < bestTime) {
+                        bestTime = t;
+                        pick = i;
+                    }
+                }
+                priced += size;
+            }
+            time += engine.getLegTime(car, at, pool[pick]);
+            at = pool[pick];
+            pool[pick] = pool[--size];
+        }
+        return time + engine.getLegTime(car, at, end);
+    }
+
+    /**
+     * @return The name of the driver.
+     */
+    @Override
+    public String toString() {
+        return "Monte Carlo";
+    }
+
+}
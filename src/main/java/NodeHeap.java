@@ -0,0 +1,85 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of graph nodes by a double key, kept in two parallel primitive arrays so pushing
+ * and popping allocate nothing once it has grown. There is no decrease-key: a node whose key drops is
+ * pushed again, and whoever pops it skips the entries that are out of date.
+ */
+public class NodeHeap {
+
+    /**
+     * The keys and nodes, heap ordered by key.
+     */
+    private double[] keys = new double[64];
+    private int[] nodes = new int[64];
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * @param key  The key.
+     * @param node The node.
+     */
+    public void push(double key, int node) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        int k = size++;
+        while (k > 0) {
+            int up = (k - 1) >> 1;
+            if (keys[up] <= key) break;
+            keys[k] = keys[up];
+            nodes[k] = nodes[up];
+            k = up;
+        }
+        keys[k] = key;
+        nodes[k] = node;
+    }
+
+    /**
+     * @return The node with the smallest key, taken off the heap.
+     */
+    public int pop() {
+        int top = nodes[0];
+        double key = keys[--size];
+        int node = nodes[size];
+        int k = 0;
+        for (int child = 1; child < size; child = 2 * k + 1) {
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (key <= keys[child]) break;
+            keys[k] = keys[child];
+            nodes[k] = nodes[child];
+            k = child;
+        }
+        keys[k] = key;
+        nodes[k] = node;
+        return top;
+    }
+
+    /**
+     * @return The smallest key, infinite if the heap is empty.
+     */
+    public double peekKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    /**
+     * @return True if there are no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+}
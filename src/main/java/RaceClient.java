@@ -0,0 +1,187 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Plays races on a RaceServer. Requests are sent straight away from the calling thread, and what
+ * the server sends is read on a thread of the client's own and handed to a Listener there.
+ */
+public class RaceClient implements Closeable {
+
+    /**
+     * Receives what the server sends, on the client's reading thread.
+     */
+    public interface Listener {
+
+        /**
+         * @param race   The number of the race, for others to join it by.
+         * @param first  The first car taken.
+         * @param cars   The number of cars taken, 0 if only watching.
+         * @param header How the race is set up.
+         */
+        void joined(int race, int first, int cars, ReplayLog.Header header);
+
+        /**
+         * @param car      The car that moved.
+         * @param location Where it moved to.
+         */
+        void moved(int car, int location);
+
+        /**
+         * @param location The location a move to was not allowed.
+         */
+        void rejected(int location);
+
+        /**
+         * @param code One of the error codes of RaceProtocol.
+         */
+        void error(int code);
+
+        /**
+         * The connection is gone, or the server sent something that makes no sense.
+         *
+         * @param cause Why, null if the client was closed.
+         */
+        void closed(IOException cause);
+    }
+
+    /**
+     * The connection.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Receives what the server sends.
+     */
+    private final Listener listener;
+
+    /**
+     * True once closed on purpose.
+     */
+    private volatile boolean closing;
+
+    /**
+     * Connects to a server.
+     *
+     * @param address  The server.
+     * @param listener Receives what the server sends.
+     * @throws IOException if the server can't be reached.
+     */
+    public RaceClient(InetSocketAddress address, Listener listener) throws IOException {
+        this.listener = listener;
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread reader = new Thread(this::read, "race-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sets a race up on the server.
+     *
+     * @param header How the race is set up.
+     * @param cars   How many of its cars to take.
+     * @throws IOException if the request can't be sent.
+     */
+    public void create(ReplayLog.Header header, int cars) throws IOException {
+        send(RaceProtocol.create(header, cars));
+    }
+
+    /**
+     * Joins a race on the server.
+     *
+     * @param race The number of the race.
+     * @param cars How many of its cars to take, 0 to only watch.
+     * @throws IOException if the request can't be sent.
+     */
+    public void join(int race, int cars) throws IOException {
+        send(RaceProtocol.join(race, cars));
+    }
+
+    /**
+     * Asks to drive the car whose turn it is to a location. Nothing changes until the server says it moved.
+     *
+     * @param location The location.
+     * @throws IOException if the request can't be sent.
+     */
+    public void move(int location) throws IOException {
+        send(RaceProtocol.move(location));
+    }
+
+    /**
+     * Writes a whole frame.
+     */
+    private synchronized void send(byte[] frame) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * Reads frames until the connection goes, and hands each to the listener.
+     */
+    private void read() {
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        IOException cause = null;
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                for (int length = RaceProtocol.nextFrame(in); length > 0; length = RaceProtocol.nextFrame(in)) {
+                    int end = in.position() + length;
+                    handle(in);
+                    in.position(end);
+                }
+                in.compact();
+            }
+            if (!closing) cause = new EOFException("The server closed the connection");
+        } catch (IOException e) {
+            if (!closing) cause = e;
+        }
+        listener.closed(cause);
+    }
+
+    /**
+     * Hands a frame to the listener.
+     */
+    private void handle(ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        switch (type) {
+            case RaceProtocol.JOINED: {
+                int race = RaceProtocol.getVarint(frame), first = RaceProtocol.getVarint(frame);
+                int cars = RaceProtocol.getVarint(frame);
+                listener.joined(race, first, cars, ReplayLog.Header.read(frame));
+                break;
+            }
+            case RaceProtocol.MOVED: {
+                int car = RaceProtocol.getVarint(frame);
+                listener.moved(car, RaceProtocol.getVarint(frame));
+                break;
+            }
+            case RaceProtocol.REJECTED:
+                listener.rejected(RaceProtocol.getVarint(frame));
+                break;
+            case RaceProtocol.ERROR:
+                listener.error(RaceProtocol.getVarint(frame));
+                break;
+            default:
+                throw new IOException("Unknown message " + type);
+        }
+    }
+
+    /**
+     * Disconnects. The listener is told the connection closed.
+     *
+     * @throws IOException if the connection can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        channel.close();
+    }
+
+}
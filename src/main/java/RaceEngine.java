@@ -0,0 +1,397 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The rules of the race, independent of JavaFX.
+ * Owns where every car started, where it has to end, where it currently is, which
+ * locations it has visited and how long it has driven for. Cars and locations are
+ * referred to by their index, the Track only renders what the engine decides.
+ * Cars are kept as a CarState, so a race holds no object per car.
+ */
+public class RaceEngine {
+
+    /**
+     * The distance between every pair of locations, indexed by location id.
+     */
+    private DistanceMatrix distances;
+
+    /**
+     * The components, locations and time of every car, indexed by car id.
+     */
+    private CarState cars;
+
+    /**
+     * The locations each car has visited, one bit per location.
+     * Car c owns the words [c * words, (c + 1) * words).
+     */
+    private long[] visited;
+
+    /**
+     * The time of every leg for each car, priced once and remembered.
+     */
+    private LegCosts[] legCosts;
+
+    /**
+     * The number of words in each car's visited bitset.
+     */
+    private int words;
+
+    /**
+     * The number of cars that have visited every location.
+     */
+    private int finishedCars;
+
+    /**
+     * The live ranking, keyed on each car's projected finishing time.
+     */
+    private Leaderboard leaderboard;
+
+    /**
+     * The least time each car can take for any leg, for projecting finishing times.
+     */
+    private double[] minLegTime;
+
+    /**
+     * The number of cars added so far.
+     */
+    private int numCars;
+
+    /**
+     * Keeps track of which cars turn it is.
+     */
+    private int activeCar;
+
+    /**
+     * Where every move is published for spectators, null if nobody is watching. Not shared with copies.
+     */
+    private RaceEventRing events;
+
+    /**
+     * @param distances The distance between every pair of locations.
+     * @param maxCars   The number of cars that will be added.
+     */
+    public RaceEngine(DistanceMatrix distances, int maxCars) {
+        this.distances = distances;
+        cars = new CarState(maxCars);
+        legCosts = new LegCosts[maxCars];
+        words = (distances.size() + 63) >>> 6;
+        visited = new long[maxCars * words];
+        leaderboard = new Leaderboard(maxCars);
+        minLegTime = new double[maxCars];
+    }
+
+    /**
+     * Copies the state of another race, so it can be played forward without touching the original.
+     *
+     * @param other The race to copy.
+     */
+    public RaceEngine(RaceEngine other) {
+        distances = other.distances;
+        cars = new CarState(other.cars);
+        legCosts = other.legCosts; // Legs cost the same in every copy, so the tables are shared.
+        words = other.words;
+        visited = other.visited.clone();
+        finishedCars = other.finishedCars;
+        leaderboard = new Leaderboard(other.leaderboard);
+        minLegTime = other.minLegTime.clone();
+        numCars = other.numCars;
+        activeCar = other.activeCar;
+    }
+
+    /**
+     * Places a new car on the track.
+     *
+     * @param carStats The components of the car.
+     * @param startAt  The location the car starts at.
+     * @param endAt    The location the car has to finish at.
+     * @return The identifier of the car.
+     */
+    public int addCar(CarStats carStats, int startAt, int endAt) {
+        int id = cars.add(carStats, startAt, endAt);
+        numCars++;
+        legCosts[id] = new LegCosts(cars, id, distances);
+        visit(id, startAt);
+        // Legs get quicker per km below 5 km, so the quickest leg is the shortest one or a 5 km one.
+        double shortest = distances.getMinDistance();
+        minLegTime[id] = Double.isInfinite(shortest) ? 0
+                : Math.min(cars.calculateTime(id, shortest), cars.calculateTime(id, Math.max(5, shortest)));
+        leaderboard.update(id, getProjectedFinish(id));
+        return id;
+    }
+
+    /**
+     * @return The number of bytes writeState needs.
+     */
+    public int getStateBytes() {
+        return 8 + numCars * (4 + 4 + 8) + visited.length * 8;
+    }
+
+    /**
+     * Writes everything that changes as the race is played: whose turn it is, and where each car is,
+     * how long it has driven for and where it has been.
+     *
+     * @param buffer Receives getStateBytes() bytes.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(activeCar).putInt(finishedCars);
+        for (int c = 0; c < numCars; c++)
+            buffer.putInt(cars.getCurrent(c)).putInt(cars.getVisitedCount(c)).putDouble(cars.getTime(c));
+        for (long word : visited) buffer.putLong(word);
+    }
+
+    /**
+     * Puts the race back in a state written by writeState for the same track and cars.
+     *
+     * @param buffer Holds the state at its position.
+     */
+    public void readState(ByteBuffer buffer) {
+        activeCar = buffer.getInt();
+        finishedCars = buffer.getInt();
+        for (int c = 0; c < numCars; c++) cars.restore(c, buffer.getInt(), buffer.getInt(), buffer.getDouble());
+        for (int w = 0; w < visited.length; w++) visited[w] = buffer.getLong();
+        for (int c = 0; c < numCars; c++) leaderboard.update(c, getProjectedFinish(c));
+    }
+
+    /**
+     * @param from The location to get the distance from.
+     * @param to   The location to get the distance to.
+     * @return The distance between the two locations.
+     */
+    public double getDistance(int from, int to) {
+        return distances.get(from, to);
+    }
+
+    /**
+     * @param car  The car driving the leg.
+     * @param from The location the leg starts at.
+     * @param to   The location the leg ends at.
+     * @return The time it takes the car to drive the leg.
+     */
+    public double getLegTime(int car, int from, int to) {
+        return legCosts[car].get(from, to);
+    }
+
+    /**
+     * @param car The car.
+     * @return The time of every leg for the car, shared by copies of the race.
+     */
+    public LegCosts getLegCosts(int car) { return legCosts[car]; }
+
+    /**
+     * @return The distance between every pair of locations.
+     */
+    public DistanceMatrix getDistances() { return distances; }
+
+    /**
+     * @param car      The car that wants to move.
+     * @param location The location it wants to move to.
+     * @return True if it is the car's turn and the location can be driven to, otherwise false.
+     */
+    public boolean canMove(int car, int location) {
+        if (car != activeCar || isVisited(car, location)) return false;
+        return location != cars.getEnd(car) || isEndAvailable(car);
+    }
+
+    /**
+     * Moves a car to a location, adds the time of the leg and hands the turn to the next car.
+     *
+     * @param car      The car to move.
+     * @param location The location to move to.
+     * @return True if the move was made, false if it was not allowed.
+     */
+    public boolean move(int car, int location) {
+        if (!canMove(car, location)) return false;
+        int from = cars.getCurrent(car);
+        double legTime = getLegTime(car, from, location);
+        cars.moveTo(car, location, legTime);
+        visit(car, location);
+        leaderboard.update(car, getProjectedFinish(car));
+        activeCar = (activeCar + 1) % numCars;
+        if (events != null) publish(car, from, location, legTime);
+        return true;
+    }
+
+    /**
+     * Publishes a move, and the car finishing and the race ending if they did.
+     */
+    private void publish(int car, int from, int location, double legTime) {
+        double time = cars.getTime(car);
+        int count = cars.getVisitedCount(car);
+        events.publish(RaceEvent.MOVED, car, from, location, legTime, time, count);
+        if (isFinished(car)) events.publish(RaceEvent.FINISHED, car, location, location, 0, time, count);
+        if (isOver()) {
+            int winner = getWinner();
+            events.publish(RaceEvent.WINNER, winner, cars.getCurrent(winner), cars.getCurrent(winner), 0,
+                    cars.getTime(winner), cars.getVisitedCount(winner));
+        }
+    }
+
+    /**
+     * Publishes every move from now on, for spectators. Only the thread that plays the race may move it.
+     *
+     * @param events Where to publish the moves, null to stop.
+     */
+    public void setEvents(RaceEventRing events) {
+        this.events = events;
+    }
+
+    /**
+     * Marks a location as visited by a car and counts the car as finished once it has been everywhere.
+     */
+    private void visit(int car, int location) {
+        visited[car * words + (location >>> 6)] |= 1L << location;
+        if (cars.countVisit(car) == distances.size()) finishedCars++;
+    }
+
+    /**
+     * @param car The car to check.
+     * @return True if only the end location is left for the car to visit.
+     */
+    public boolean isEndAvailable(int car) {
+        return cars.getVisitedCount(car) + 1 >= distances.size();
+    }
+
+    /**
+     * @param car      The car to check.
+     * @param location The location to check.
+     * @return True if the car has been to the location, otherwise false.
+     */
+    public boolean isVisited(int car, int location) {
+        return (visited[car * words + (location >>> 6)] & (1L << location)) != 0;
+    }
+
+    /**
+     * Scans the car's visited bitset a word at a time.
+     *
+     * @param car       The car to check.
+     * @param fromIndex The first location to consider.
+     * @return The first location at or after fromIndex the car has not visited, or -1 if there is none.
+     */
+    public int nextUnvisited(int car, int fromIndex) {
+        int size = distances.size();
+        if (fromIndex >= size) return -1;
+        int w = fromIndex >>> 6;
+        long word = ~visited[car * words + w] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                int location = (w << 6) + Long.numberOfTrailingZeros(word);
+                return location < size ? location : -1;
+            }
+            if (++w == words) return -1;
+            word = ~visited[car * words + w];
+        }
+    }
+
+    /**
+     * @param car  The car.
+     * @param word Which 64 locations, word w covers locations 64w to 64w + 63.
+     * @return The car's visited bits for those locations.
+     */
+    public long getVisitedWord(int car, int word) {
+        return visited[car * words + word];
+    }
+
+    /**
+     * @return The number of words in each car's visited bitset.
+     */
+    public int getWordCount() { return words; }
+
+    /**
+     * @param car The car to check.
+     * @return True if the car has visited every location.
+     */
+    public boolean isFinished(int car) {
+        return cars.getVisitedCount(car) == distances.size();
+    }
+
+    /**
+     * @return True once every car has visited every location.
+     */
+    public boolean isOver() {
+        return finishedCars == numCars;
+    }
+
+    /**
+     * A lower bound on the car's finishing time: every location left needs at least one leg to reach it.
+     *
+     * @param car The car.
+     * @return The car's time so far plus the least time the rest of its route can take.
+     */
+    public double getProjectedFinish(int car) {
+        return cars.getTime(car) + (distances.size() - cars.getVisitedCount(car)) * minLegTime[car];
+    }
+
+    /**
+     * @return The live ranking of the cars by projected finishing time.
+     */
+    public Leaderboard getLeaderboard() { return leaderboard; }
+
+    /**
+     * @return The car with the lowest time, the first car wins ties.
+     */
+    public int getWinner() {
+        // Once every car is at its end the projections are the final times.
+        if (isOver()) return leaderboard.getLeader();
+        int winner = 0;
+        for (int c = 1; c < numCars; c++) if (cars.getTime(winner) > cars.getTime(c)) winner = c;
+        return winner;
+    }
+
+    /**
+     * @return The number of locations on the track.
+     */
+    public int getNumLocations() { return distances.size(); }
+
+    /**
+     * @return The number of cars on the track.
+     */
+    public int getNumCars() { return numCars; }
+
+    /**
+     * @return The car whose turn it is.
+     */
+    public int getActiveCar() { return activeCar; }
+
+    /**
+     * @return Every car's components, locations and time.
+     */
+    public CarState getCars() { return cars; }
+
+    /**
+     * @param car The car.
+     * @return The components of the car, as a new CarStats.
+     */
+    public CarStats getStats(int car) { return cars.getStats(car); }
+
+    /**
+     * @param car The car.
+     * @return The location the car started at.
+     */
+    public int getStart(int car) { return cars.getStart(car); }
+
+    /**
+     * @param car The car.
+     * @return The location the car has to finish at.
+     */
+    public int getEnd(int car) { return cars.getEnd(car); }
+
+    /**
+     * @param car The car.
+     * @return The location the car is currently at.
+     */
+    public int getCurrent(int car) { return cars.getCurrent(car); }
+
+    /**
+     * @param car The car.
+     * @return The number of locations the car has visited, including its start.
+     */
+    public int getVisitedCount(int car) { return cars.getVisitedCount(car); }
+
+    /**
+     * @param car The car.
+     * @return The total time the car has driven for.
+     */
+    public double getTime(int car) { return cars.getTime(car); }
+
+}
@@ -0,0 +1,107 @@
+package main.java;
+
+/**
+ * Something that happened in a race, as a spectator reads it from a RaceEventRing. One object is
+ * reused for every event a spectator reads, so reading allocates nothing.
+ */
+public class RaceEvent {
+
+    /**
+     * A car drove a leg. Every field is set.
+     */
+    public static final int MOVED = 1;
+
+    /**
+     * A car visited its last location. The car, its location and its time are set.
+     */
+    public static final int FINISHED = 2;
+
+    /**
+     * The race is over. The car is the winner, with its location and time.
+     */
+    public static final int WINNER = 3;
+
+    /**
+     * The number of the event within its race, counting from 0.
+     */
+    long sequence;
+
+    /**
+     * What happened, one of the types above.
+     */
+    int type;
+
+    /**
+     * The car it happened to.
+     */
+    int car;
+
+    /**
+     * Where the car drove from and to, or where it is for events that aren't moves.
+     */
+    int from, location;
+
+    /**
+     * How long the leg took, and the car's time after it.
+     */
+    double legTime, time;
+
+    /**
+     * How many locations the car has visited.
+     */
+    int visitedCount;
+
+    /**
+     * @return The number of the event within its race, counting from 0.
+     */
+    public long getSequence() { return sequence; }
+
+    /**
+     * @return What happened: MOVED, FINISHED or WINNER.
+     */
+    public int getType() { return type; }
+
+    /**
+     * @return The car it happened to.
+     */
+    public int getCar() { return car; }
+
+    /**
+     * @return Where the car drove from.
+     */
+    public int getFrom() { return from; }
+
+    /**
+     * @return Where the car is.
+     */
+    public int getLocation() { return location; }
+
+    /**
+     * @return How long the leg took.
+     */
+    public double getLegTime() { return legTime; }
+
+    /**
+     * @return The car's time so far.
+     */
+    public double getTime() { return time; }
+
+    /**
+     * @return How many locations the car has visited.
+     */
+    public int getVisitedCount() { return visitedCount; }
+
+    /**
+     * @return The event in words.
+     */
+    @Override
+    public String toString() {
+        switch (type) {
+            case MOVED: return "#" + sequence + " car " + car + " drove " + from + " -> " + location + " in "
+                    + String.format("%.2f", legTime) + " hr, " + visitedCount + " visited";
+            case FINISHED: return "#" + sequence + " car " + car + " finished in " + String.format("%.2f", time) + " hr";
+            default: return "#" + sequence + " car " + car + " won in " + String.format("%.2f", time) + " hr";
+        }
+    }
+
+}
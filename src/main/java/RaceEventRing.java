@@ -0,0 +1,183 @@
+package main.java;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands the events of a race to any number of spectators without the race ever waiting for them.
+ * The events go round a preallocated ring of slots, each a cache line of longs holding the event and
+ * the sequence number it was written for. The one thread that plays the race writes an event into its
+ * slot in place, publishing it with ordered stores and no locks, and never allocates. Each Subscriber
+ * reads at its own pace, checking the slot's sequence before and after reading it; one that falls a whole
+ * ring behind has the events it missed counted as dropped and carries on from the oldest still there.
+ */
+public class RaceEventRing {
+
+    /**
+     * The number of events a track keeps for its spectators.
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * The longs in a slot: its sequence, the type and car, from and location, leg time, time and visited count.
+     * A slot takes a whole 64 byte cache line.
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * The slots, one after the other.
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * The number of slots less one, the number of slots being a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The sequence of the last event published, -1 before the first.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /**
+     * The sequence of the next event. Only used by the writing thread.
+     */
+    private long next;
+
+    /**
+     * @param size The number of events kept for slow spectators, rounded up to a power of two.
+     */
+    public RaceEventRing(int size) {
+        int slotCount = Integer.highestOneBit(Math.max(2, size) * 2 - 1);
+        mask = slotCount - 1;
+        slots = new AtomicLongArray(slotCount * STRIDE);
+        for (int i = 0; i < slotCount; i++) slots.set(i * STRIDE, -1);
+    }
+
+    /**
+     * @return The number of events kept for slow spectators.
+     */
+    public int size() { return mask + 1; }
+
+    /**
+     * @return The number of events published so far.
+     */
+    public long getPublished() { return cursor.get() + 1; }
+
+    /**
+     * Publishes an event. Only ever called from the one thread playing the race.
+     *
+     * @param type         What happened, one of the types of RaceEvent.
+     * @param car          The car it happened to.
+     * @param from         Where the car drove from.
+     * @param location     Where the car is.
+     * @param legTime      How long the leg took.
+     * @param time         The car's time so far.
+     * @param visitedCount How many locations the car has visited.
+     */
+    public void publish(int type, int car, int from, int location, double legTime, double time, int visitedCount) {
+        long sequence = next++;
+        int at = ((int) sequence & mask) * STRIDE;
+        // Marked as being written first, so a reader that sees any of the new values also sees the mark.
+        slots.lazySet(at, -1);
+        slots.lazySet(at + 1, (long) type << 32 | car);
+        slots.lazySet(at + 2, (long) from << 32 | location);
+        slots.lazySet(at + 3, Double.doubleToRawLongBits(legTime));
+        slots.lazySet(at + 4, Double.doubleToRawLongBits(time));
+        slots.lazySet(at + 5, visitedCount);
+        slots.lazySet(at, sequence);
+        cursor.lazySet(sequence);
+    }
+
+    /**
+     * @return A spectator that reads the events from the next one published on.
+     */
+    public Subscriber subscribe() {
+        return new Subscriber(cursor.get() + 1);
+    }
+
+    /**
+     * @return A spectator that reads from the oldest event still kept.
+     */
+    public Subscriber subscribeFromOldest() {
+        return new Subscriber(Math.max(0, cursor.get() + 1 - size()));
+    }
+
+    /**
+     * Reads the events at its own pace. Only used from one thread at a time.
+     */
+    public class Subscriber {
+
+        /**
+         * The sequence of the next event to read.
+         */
+        private long next;
+
+        /**
+         * The number of events that were overwritten before they were read.
+         */
+        private long dropped;
+
+        /**
+         * @param next The sequence of the first event to read.
+         */
+        private Subscriber(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Reads the next event, if there is one. Never waits.
+         *
+         * @param event Receives the event.
+         * @return True if an event was read, false if every event published has been read.
+         */
+        public boolean poll(RaceEvent event) {
+            while (true) {
+                long last = cursor.get();
+                if (next > last) return false;
+                if (last - next >= size()) skipTo(last - size() + 1);
+                int at = ((int) next & mask) * STRIDE;
+                if (slots.get(at) == next) {
+                    long typeAndCar = slots.get(at + 1), fromAndTo = slots.get(at + 2);
+                    double legTime = Double.longBitsToDouble(slots.get(at + 3));
+                    double time = Double.longBitsToDouble(slots.get(at + 4));
+                    int visitedCount = (int) slots.get(at + 5);
+                    if (slots.get(at) == next) {
+                        event.sequence = next++;
+                        event.type = (int) (typeAndCar >>> 32);
+                        event.car = (int) typeAndCar;
+                        event.from = (int) (fromAndTo >>> 32);
+                        event.location = (int) fromAndTo;
+                        event.legTime = legTime;
+                        event.time = time;
+                        event.visitedCount = visitedCount;
+                        return true;
+                    }
+                }
+                // Overwritten while being read, the writer is a whole ring ahead.
+                skipTo(Math.max(next + 1, cursor.get() - size() + 1));
+            }
+        }
+
+        /**
+         * Gives up on the events before a sequence.
+         */
+        private void skipTo(long sequence) {
+            dropped += sequence - next;
+            next = sequence;
+        }
+
+        /**
+         * @return The number of events published that haven't been read yet, at most the size of the ring.
+         */
+        public long getBacklog() {
+            return Math.min(size(), cursor.get() + 1 - next);
+        }
+
+        /**
+         * @return The number of events that were overwritten before they could be read.
+         */
+        public long getDropped() { return dropped; }
+    }
+
+}
@@ -0,0 +1,210 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The messages between a RaceServer and its clients. Every message is a frame: its length as a
+ * varint, a type byte, then its fields, numbers as varints and a race setup as a ReplayLog.Header.
+ * A move is three bytes on the wire for tracks of up to 16384 locations.
+ * Clients only send setups and the locations they want to drive to. Everyone in a race is sent every
+ * move that is made, and replays it on their own copy of the race, as a replay does.
+ */
+public class RaceProtocol {
+
+    /**
+     * Client to server: set a race up and take some of its cars. Fields: the header, the number of cars.
+     */
+    public static final byte CREATE = 1;
+
+    /**
+     * Client to server: take some cars of a race. Fields: the race, the number of cars.
+     */
+    public static final byte JOIN = 2;
+
+    /**
+     * Client to server: drive the car whose turn it is to a location. Fields: the location.
+     */
+    public static final byte MOVE = 3;
+
+    /**
+     * Server to client: cars were taken. Fields: the race, the first car, the number of cars, the header.
+     * The moves made so far follow.
+     */
+    public static final byte JOINED = 16;
+
+    /**
+     * Server to client: a move was made. Fields: the car, the location.
+     */
+    public static final byte MOVED = 17;
+
+    /**
+     * Server to client: a move was not allowed. Fields: the location.
+     */
+    public static final byte REJECTED = 18;
+
+    /**
+     * Server to client: a request failed. Fields: one of the error codes.
+     */
+    public static final byte ERROR = 19;
+
+    /**
+     * The error codes: no race with that number, no cars left to take, a message that makes no sense.
+     */
+    public static final int NO_RACE = 1, FULL = 2, BAD_MESSAGE = 3;
+
+    /**
+     * The longest frame either side accepts.
+     */
+    public static final int MAX_FRAME = 256;
+
+    private RaceProtocol() {
+    }
+
+    /**
+     * @param header How the race is set up.
+     * @param cars   How many cars to take.
+     * @return A CREATE frame.
+     */
+    public static byte[] create(ReplayLog.Header header, int cars) {
+        ByteBuffer body = body(CREATE);
+        header.write(body);
+        putVarint(body, cars);
+        return frame(body);
+    }
+
+    /**
+     * @param race The race.
+     * @param cars How many cars to take.
+     * @return A JOIN frame.
+     */
+    public static byte[] join(int race, int cars) {
+        return frame(JOIN, race, cars);
+    }
+
+    /**
+     * @param location The location.
+     * @return A MOVE frame.
+     */
+    public static byte[] move(int location) {
+        return frame(MOVE, location);
+    }
+
+    /**
+     * @param race   The race.
+     * @param first  The first car taken.
+     * @param cars   The number of cars taken.
+     * @param header How the race is set up.
+     * @return A JOINED frame.
+     */
+    public static byte[] joined(int race, int first, int cars, ReplayLog.Header header) {
+        ByteBuffer body = body(JOINED);
+        putVarint(body, race);
+        putVarint(body, first);
+        putVarint(body, cars);
+        header.write(body);
+        return frame(body);
+    }
+
+    /**
+     * @param car      The car.
+     * @param location The location.
+     * @return A MOVED frame.
+     */
+    public static byte[] moved(int car, int location) {
+        return frame(MOVED, car, location);
+    }
+
+    /**
+     * @param location The location.
+     * @return A REJECTED frame.
+     */
+    public static byte[] rejected(int location) {
+        return frame(REJECTED, location);
+    }
+
+    /**
+     * @param code The error code.
+     * @return An ERROR frame.
+     */
+    public static byte[] error(int code) {
+        return frame(ERROR, code);
+    }
+
+    /**
+     * Finds the next whole frame.
+     *
+     * @param buffer The bytes received, from its position to its limit.
+     * @return The length of the frame, with the buffer at its type byte, or -1 with the buffer
+     * unchanged if the frame hasn't arrived whole yet.
+     * @throws IOException if the frame is longer than MAX_FRAME.
+     */
+    public static int nextFrame(ByteBuffer buffer) throws IOException {
+        int start = buffer.position(), length = getVarint(buffer);
+        if (length > MAX_FRAME || length == 0) throw new IOException("Bad frame length " + length);
+        if (length < 0 || buffer.remaining() < length) {
+            buffer.position(start);
+            return -1;
+        }
+        return length;
+    }
+
+    /**
+     * Writes a number in 7 bit groups, least significant first, the high bit set on all but the last.
+     *
+     * @param buffer Where to write it.
+     * @param value  The number, at least 0.
+     */
+    public static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @param buffer Where to read it from.
+     * @return The number, or -1 if the buffer ends before it does.
+     * @throws IOException if it is longer than an int can be.
+     */
+    public static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; buffer.hasRemaining(); shift += 7) {
+            if (shift > 28) throw new IOException("Varint too long");
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        return -1;
+    }
+
+    /**
+     * @return A buffer for the body of a frame, holding its type.
+     */
+    private static ByteBuffer body(byte type) {
+        return ByteBuffer.allocate(MAX_FRAME).put(type);
+    }
+
+    /**
+     * @return A frame of a type and some numbers.
+     */
+    private static byte[] frame(byte type, int... fields) {
+        ByteBuffer body = body(type);
+        for (int field : fields) putVarint(body, field);
+        return frame(body);
+    }
+
+    /**
+     * @return The frame holding a body.
+     */
+    private static byte[] frame(ByteBuffer body) {
+        body.flip();
+        ByteBuffer frame = ByteBuffer.allocate(5 + body.remaining());
+        putVarint(frame, body.remaining());
+        frame.put(body);
+        return Arrays.copyOf(frame.array(), frame.position());
+    }
+
+}
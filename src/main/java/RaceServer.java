@@ -0,0 +1,558 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many races at once over TCP, speaking RaceProtocol. A few event loops, one per processor,
+ * each multiplex thousands of non-blocking connections with a Selector. Every race and every
+ * connection belongs to one loop and is only ever touched on its thread, so nothing is locked: work for
+ * another loop is handed to it as a task. A client that doesn't read what it is sent is disconnected
+ * once too much piles up for it, so it never holds up anyone else.
+ */
+public class RaceServer implements Closeable {
+
+    /**
+     * The port the server listens on unless told otherwise.
+     */
+    public static final int DEFAULT_PORT = 7878;
+
+    /**
+     * The most locations a race on the server may have. A little more than the largest race is set up
+     * with, which keeps the distances and leg tables of a race to about half a megabyte.
+     */
+    public static final int MAX_LOCATIONS = 64;
+
+    /**
+     * How many bytes may wait to be sent to a client before it is disconnected.
+     */
+    private static final int MAX_QUEUED = 64 * 1024;
+
+    /**
+     * The socket connections are accepted on.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * The event loops. The first one also accepts connections.
+     */
+    private final Loop[] loops;
+
+    /**
+     * The races still being played, by number.
+     */
+    private final ConcurrentHashMap<Integer, Race> races = new ConcurrentHashMap<>();
+
+    /**
+     * The number of the next race.
+     */
+    private final AtomicInteger nextRace = new AtomicInteger(1);
+
+    /**
+     * The loop the next connection goes to. Only used on the first loop.
+     */
+    private int nextLoop;
+
+    /**
+     * Starts listening.
+     *
+     * @param address The address to listen on, port 0 for any free port.
+     * @param threads The number of event loops.
+     * @throws IOException if the address can't be listened on.
+     */
+    public RaceServer(InetSocketAddress address, int threads) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        loops = new Loop[threads];
+        for (int i = 0; i < threads; i++) loops[i] = new Loop(i);
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (Loop loop : loops) loop.thread.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return The number of races still being played.
+     */
+    public int getRaces() {
+        return races.size();
+    }
+
+    /**
+     * Stops the loops and disconnects everyone.
+     *
+     * @throws IOException if the listening socket can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Loop loop : loops) {
+            loop.running = false;
+            loop.selector.wakeup();
+        }
+        for (Loop loop : loops) {
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        server.close();
+    }
+
+    /**
+     * Runs a server until the process is killed.
+     *
+     * @param args The port to listen on, DEFAULT_PORT if none is given.
+     * @throws Exception if the server can't be started.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RaceServer server = new RaceServer(new InetSocketAddress(port), Runtime.getRuntime().availableProcessors());
+        System.out.println("Listening on port " + server.getPort() + " with " + server.loops.length + " loops");
+        server.loops[0].thread.join();
+    }
+
+    /**
+     * Takes every connection waiting to be accepted and hands each to a loop in turn. A connection that
+     * can't be accepted, say because the process is out of file descriptors, is left for the next select.
+     */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (channel == null) return;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                e.printStackTrace();
+                try {
+                    channel.close();
+                } catch (IOException closing) {
+                    // Going away anyway.
+                }
+                continue;
+            }
+            Loop loop = loops[nextLoop++ % loops.length];
+            loop.run(() -> loop.register(channel));
+        }
+    }
+
+    /**
+     * A thread with a Selector, running its connections and races and any tasks handed to it.
+     */
+    private class Loop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+
+        /**
+         * Tasks handed over from other threads.
+         */
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * False once the server is closing.
+         */
+        private volatile boolean running = true;
+
+        /**
+         * @param index The number of the loop, for naming its thread.
+         */
+        Loop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "race-server-" + index);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Runs a task on this loop, straight away if already on its thread.
+         */
+        void run(Runnable task) {
+            if (Thread.currentThread() == thread) task.run();
+            else {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Starts reading from a new connection.
+         */
+        void register(SocketChannel channel) {
+            Connection connection = new Connection(this, channel);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) task.run();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else ((Connection) key.attachment()).ready();
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * A client. Only used on its loop's thread.
+     */
+    private class Connection {
+
+        private final Loop loop;
+        private final SocketChannel channel;
+        private SelectionKey key;
+
+        /**
+         * The bytes received and not yet handled, room for two whole frames.
+         */
+        private final ByteBuffer in = ByteBuffer.allocate(2 * RaceProtocol.MAX_FRAME + 5);
+
+        /**
+         * The frames waiting to be sent, and how many bytes they add up to.
+         */
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private int queued;
+
+        /**
+         * The race the client is in, null until it creates or joins one and the race takes it in.
+         */
+        private Race race;
+
+        /**
+         * True while a race is deciding whether to take the client in.
+         */
+        private boolean joining;
+
+        private boolean closed;
+
+        Connection(Loop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        /**
+         * Reads and writes whatever the selector says can be.
+         */
+        void ready() {
+            try {
+                if (key.isReadable()) read();
+                if (!closed && key.isWritable()) flush();
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        /**
+         * Reads what has arrived and handles every whole frame.
+         */
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            for (int length = RaceProtocol.nextFrame(in); length > 0 && !closed; length = RaceProtocol.nextFrame(in)) {
+                int end = in.position() + length, limit = in.limit();
+                in.limit(end);
+                handle(in);
+                in.limit(limit);
+                in.position(end);
+            }
+            in.compact();
+        }
+
+        /**
+         * Handles a frame.
+         *
+         * @param frame The frame, from its type byte to its end.
+         * @throws IOException if it makes no sense.
+         */
+        private void handle(ByteBuffer frame) throws IOException {
+            switch (frame.get()) {
+                case RaceProtocol.CREATE: {
+                    ReplayLog.Header header = ReplayLog.Header.read(frame);
+                    int cars = field(frame);
+                    if (race != null || joining || !isPlayable(header)) {
+                        send(RaceProtocol.error(RaceProtocol.BAD_MESSAGE));
+                        return;
+                    }
+                    Race created = new Race(nextRace.getAndIncrement(), header, loop);
+                    races.put(created.id, created);
+                    joining = true;
+                    created.join(this, cars);
+                    break;
+                }
+                case RaceProtocol.JOIN: {
+                    Race joined = races.get(field(frame));
+                    int cars = field(frame);
+                    if (joined == null || race != null || joining) {
+                        send(RaceProtocol.error(joined == null ? RaceProtocol.NO_RACE : RaceProtocol.BAD_MESSAGE));
+                        return;
+                    }
+                    joining = true;
+                    joined.loop.run(() -> joined.join(this, cars));
+                    break;
+                }
+                case RaceProtocol.MOVE: {
+                    int location = field(frame);
+                    Race moved = race;
+                    if (moved == null) send(RaceProtocol.error(RaceProtocol.NO_RACE));
+                    else moved.loop.run(() -> moved.move(this, location));
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown message");
+            }
+        }
+
+        /**
+         * Hears back from a race the client asked to join. Runs on this connection's loop, before the
+         * race's answer is sent.
+         *
+         * @param joined The race, null if it turned the client away.
+         */
+        void joined(Race joined) {
+            joining = false;
+            if (joined == null) return;
+            race = joined;
+            if (closed) joined.loop.run(() -> joined.leave(this)); // Gone while the race was deciding.
+        }
+
+        /**
+         * Queues a frame to be sent. Can be called from any thread.
+         *
+         * @param frame The frame. Not changed afterwards, so it can be shared between clients.
+         */
+        void send(byte[] frame) {
+            loop.run(() -> {
+                if (closed) return;
+                if (queued + frame.length > MAX_QUEUED) {
+                    close(); // Not keeping up, let it go rather than hold the race up.
+                    return;
+                }
+                out.add(ByteBuffer.wrap(frame));
+                queued += frame.length;
+                try {
+                    flush();
+                } catch (IOException e) {
+                    close();
+                }
+            });
+        }
+
+        /**
+         * Writes as much of the queue as the socket takes, and asks to be told when it takes more.
+         */
+        private void flush() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer next = out.peek();
+                channel.write(next);
+                if (next.hasRemaining()) break;
+                queued -= next.capacity();
+                out.poll();
+            }
+            if (key != null && key.isValid())
+                key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Disconnects the client and gives its cars up.
+         */
+        void close() {
+            if (closed) return;
+            closed = true;
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Going away anyway.
+            }
+            Race left = race;
+            if (left != null) left.loop.run(() -> left.leave(this));
+        }
+    }
+
+    /**
+     * @return A number field of a frame.
+     * @throws IOException if the frame ends before it does.
+     */
+    private static int field(ByteBuffer frame) throws IOException {
+        int value = RaceProtocol.getVarint(frame);
+        if (value < 0) throw new IOException("Frame too short");
+        return value;
+    }
+
+    /**
+     * @return True if a race set up like this can be played on the server. Races on roads are left to
+     * local play, setting one up takes a search across the whole road network per location.
+     */
+    private static boolean isPlayable(ReplayLog.Header header) {
+        double offset = header.getOffset();
+        return header.getNumPlayers() >= 1 && header.getNumPlayers() <= 15
+                && header.getNumLocations() >= 2 && header.getNumLocations() <= MAX_LOCATIONS
+                && header.getStatTotal() == Tournament.STAT_TOTAL && header.getRoadNodes() == 0
+                && offset > 0 && offset <= 200
+                && header.getSceneX() > 2 * offset + 300 && header.getSceneX() <= 10000
+                && header.getSceneY() > 2 * offset && header.getSceneY() <= 10000;
+    }
+
+    /**
+     * A race and the clients in it. Only used on its loop's thread. The cars of a client that leaves, or is
+     * let go for not keeping up, are driven by a GreedyDriver so the others can finish the race.
+     */
+    private class Race {
+
+        private final int id;
+        private final ReplayLog.Header header;
+        private final Loop loop;
+        private final RaceEngine engine;
+
+        /**
+         * The client driving each car, null for cars nobody drives.
+         */
+        private final Connection[] drivers;
+        private int taken;
+
+        /**
+         * Takes the turns of cars whose client has left.
+         */
+        private final Driver standIn = new GreedyDriver();
+
+        /**
+         * Every client in the race, including those only watching.
+         */
+        private final List<Connection> members = new ArrayList<>();
+
+        /**
+         * The location of every move made so far, for clients joining late.
+         */
+        private int[] moves = new int[16];
+        private int numMoves;
+
+        Race(int id, ReplayLog.Header header, Loop loop) {
+            this.id = id;
+            this.header = header;
+            this.loop = loop;
+            engine = header.createRace(null, null);
+            drivers = new Connection[header.getNumPlayers()];
+        }
+
+        /**
+         * Gives a client the next free cars, or none to just watch, and catches it up. The client's loop
+         * hears whether it got in before the answer is sent.
+         */
+        void join(Connection client, int cars) {
+            int first = taken, count = Math.min(cars, drivers.length - taken);
+            if (cars > 0 && count == 0) {
+                client.loop.run(() -> client.joined(null));
+                client.send(RaceProtocol.error(RaceProtocol.FULL));
+                return;
+            }
+            while (taken < first + count) drivers[taken++] = client;
+            members.add(client);
+            client.loop.run(() -> client.joined(this));
+            client.send(RaceProtocol.joined(id, first, count, header));
+            for (int m = 0; m < numMoves; m++) client.send(RaceProtocol.moved(m % drivers.length, moves[m]));
+        }
+
+        /**
+         * Makes a move, if the client drives the car whose turn it is and the move is allowed, and tells everyone.
+         */
+        void move(Connection client, int location) {
+            int car = engine.getActiveCar();
+            if (drivers[car] != client || location >= engine.getNumLocations() || !engine.move(car, location)) {
+                client.send(RaceProtocol.rejected(location));
+                return;
+            }
+            moved(car, location);
+            driveAbandoned();
+        }
+
+        /**
+         * Keeps a move that was made and tells everyone.
+         */
+        private void moved(int car, int location) {
+            if (numMoves == moves.length) moves = Arrays.copyOf(moves, numMoves * 2);
+            moves[numMoves++] = location;
+            byte[] frame = RaceProtocol.moved(car, location);
+            for (Connection member : members) member.send(frame);
+            if (engine.isOver()) races.remove(id);
+        }
+
+        /**
+         * Takes the turns of cars whose client has left, until a car someone drives, or is still to
+         * join for, has the turn.
+         */
+        private void driveAbandoned() {
+            while (!engine.isOver()) {
+                int car = engine.getActiveCar();
+                if (car >= taken || drivers[car] != null) return;
+                int location = standIn.chooseNext(engine, car, Long.MAX_VALUE);
+                engine.move(car, location);
+                moved(car, location);
+            }
+        }
+
+        /**
+         * Takes a client out of the race. Its cars are driven by the server from then on.
+         */
+        void leave(Connection client) {
+            members.remove(client);
+            for (int c = 0; c < drivers.length; c++) if (drivers[c] == client) drivers[c] = null;
+            if (members.isEmpty()) races.remove(id);
+            else driveAbandoned();
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lets a replay jump to any turn. One pass over a ReplayLog writes a keyframe every INTERVAL moves:
+ * where the next move starts in the log and the whole state of the race at that point. The keyframes
+ * live in a temporary file that is memory-mapped, so only the pages actually visited are in memory,
+ * and reaching a turn costs restoring the keyframe before it and playing at most INTERVAL - 1 moves.
+ */
+public class ReplayIndex implements Closeable {
+
+    /**
+     * The number of moves between two keyframes.
+     */
+    public static final int INTERVAL = 256;
+
+    /**
+     * How the race was set up.
+     */
+    private ReplayLog.Header header;
+
+    /**
+     * The log, read from wherever the last seek left it.
+     */
+    private ReplayReader reader;
+
+    /**
+     * The keyframes, one after the other.
+     */
+    private MappedByteBuffer frames;
+
+    /**
+     * The size of a keyframe in bytes.
+     */
+    private int frameBytes;
+
+    /**
+     * The number of moves in the log.
+     */
+    private long moves;
+
+    /**
+     * The file the keyframes are kept in.
+     */
+    private Path file;
+
+    /**
+     * Reads the whole log once and writes its keyframes.
+     *
+     * @param log The log.
+     * @throws IOException if the log can't be read or the keyframes can't be written.
+     */
+    public ReplayIndex(Path log) throws IOException {
+        this(new ReplayReader(log), null);
+    }
+
+    /**
+     * Reads the whole log once and writes its keyframes, playing it on a copy of a race that is already
+     * set up, so its roads and distances aren't worked out a second time.
+     *
+     * @param reader The log, not read from yet. Closed with the index, or straight away if indexing fails.
+     * @param race   The race set up from the header of the log, before its first turn, and left as it is.
+     *               Null to set one up here.
+     * @throws IOException if the log can't be read or the keyframes can't be written.
+     */
+    public ReplayIndex(ReplayReader reader, RaceEngine race) throws IOException {
+        this.reader = reader;
+        header = reader.getHeader();
+        try {
+            RaceEngine engine = race == null ? header.createRace(null, null) : new RaceEngine(race);
+            file = Files.createTempFile("replay", ".idx");
+            file.toFile().deleteOnExit();
+            frameBytes = 8 + engine.getStateBytes();
+            ByteBuffer frame = ByteBuffer.allocateDirect(frameBytes);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+                for (int location = 0; location >= 0; moves++) {
+                    if (moves % INTERVAL == 0) {
+                        frame.clear();
+                        frame.putLong(reader.getPosition());
+                        engine.writeState(frame);
+                        frame.flip();
+                        while (frame.hasRemaining()) channel.write(frame);
+                    }
+                    location = reader.next();
+                    if (location >= 0 && !engine.move(engine.getActiveCar(), location))
+                        throw new IOException("Move " + reader.getMoves() + " of the log is not allowed");
+                }
+                moves--;
+                frames = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return How the race was set up.
+     */
+    public ReplayLog.Header getHeader() { return header; }
+
+    /**
+     * @return The number of moves in the log.
+     */
+    public long getMoves() { return moves; }
+
+    /**
+     * Puts a race in the state it was in after a number of moves.
+     *
+     * @param engine The race, set up from the same header.
+     * @param turn   The number of moves to have been made, at most getMoves().
+     * @throws IOException if the log can't be read.
+     */
+    public void seek(RaceEngine engine, long turn) throws IOException {
+        long k = turn / INTERVAL;
+        ByteBuffer frame = frames.duplicate();
+        frame.position((int) (k * frameBytes));
+        reader.seek(frame.getLong(), k * INTERVAL);
+        engine.readState(frame);
+        for (long m = k * INTERVAL; m < turn; m++) engine.move(engine.getActiveCar(), reader.next());
+    }
+
+    /**
+     * @return The location the move after the last one sought or read moved to, or -1 at the end of the log.
+     * @throws IOException if the log can't be read.
+     */
+    public int next() throws IOException {
+        return reader.next();
+    }
+
+    /**
+     * Reads a range of moves, for redrawing what led up to a turn. Starts at the keyframe before the
+     * first one, so it costs at most INTERVAL - 1 skipped moves on top of the range.
+     * Seek again afterwards before reading on with next.
+     *
+     * @param from     The number of the first move to read.
+     * @param to       The number of moves to have read by the end, at most getMoves().
+     * @param consumer Receives each move: the number of the move and the location moved to.
+     * @throws IOException if the log can't be read.
+     */
+    public void forEachMove(long from, long to, MoveConsumer consumer) throws IOException {
+        long k = from / INTERVAL;
+        reader.seek(frames.getLong((int) (k * frameBytes)), k * INTERVAL);
+        for (long m = k * INTERVAL; m < from; m++) reader.next();
+        for (long m = from; m < to; m++) consumer.accept(m, reader.next());
+    }
+
+    /**
+     * Receives the moves of a log.
+     */
+    public interface MoveConsumer {
+
+        /**
+         * @param move     The number of the move, counting from 0.
+         * @param location The location moved to.
+         */
+        void accept(long move, int location);
+    }
+
+    /**
+     * Closes the log and deletes the keyframes.
+     *
+     * @throws IOException if the log can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+        frames = null;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still mapped on some platforms, deleteOnExit takes care of it.
+        }
+    }
+
+}
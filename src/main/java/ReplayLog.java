@@ -0,0 +1,272 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Records a race as an append-only binary log: a fixed size header with the seed and the settings the
+ * race was set up with, then the location each turn moved to as a varint, one to three bytes on any
+ * realistic track. Whose turn it was is not stored, the engine rotates turns on its own.
+ * The header is written as soon as the log is created. Moves are batched in a direct buffer and written
+ * through a FileChannel whenever it fills up or is flushed; a game flushes after every turn, so a race
+ * left midway is still a valid, unfinished log.
+ */
+public class ReplayLog implements Closeable {
+
+    /**
+     * The first four bytes of every log, "RPLY".
+     */
+    public static final int MAGIC = 0x52504C59;
+
+    /**
+     * The version of the format.
+     */
+    public static final short VERSION = 2;
+
+    /**
+     * How many bytes are batched before they are written.
+     */
+    private static final int BATCH = 8192;
+
+    /**
+     * The file being written.
+     */
+    private FileChannel channel;
+
+    /**
+     * The bytes not yet written.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Creates the log, replacing any file already there, and writes its header.
+     *
+     * @param file   The file to write.
+     * @param header How the race was set up.
+     * @throws IOException if the file can't be written.
+     */
+    public ReplayLog(Path file, Header header) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(BATCH);
+        header.write(buffer);
+        try {
+            flush();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records a turn.
+     *
+     * @param location The location the active car moved to.
+     * @throws IOException if a full batch can't be written.
+     */
+    public void append(int location) throws IOException {
+        if (buffer.remaining() < 5) flush();
+        while ((location & ~0x7F) != 0) {
+            buffer.put((byte) (location & 0x7F | 0x80));
+            location >>>= 7;
+        }
+        buffer.put((byte) location);
+    }
+
+    /**
+     * Writes every batched byte to the file.
+     *
+     * @throws IOException if the bytes can't be written.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes what is left and closes the file. Closing twice does nothing.
+     *
+     * @throws IOException if the bytes can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Everything needed to set a race up again: the seed and the arguments it was created with.
+     */
+    public static class Header {
+
+        /**
+         * The size of a header in bytes.
+         */
+        public static final int BYTES = 4 + 2 + 8 + 4 * 4 + 8 * 3;
+
+        /**
+         * Mixed into the seed for the roads, so they are not drawn from the same numbers as the track.
+         */
+        private static final long ROADS = 0x526F616473L;
+
+        private long seed;
+        private int statTotal, numPlayers, numLocations, roadNodes;
+        private double offset, sceneX, sceneY;
+
+        /**
+         * @param seed         The seed the race was created with.
+         * @param statTotal    What each car's components add up to.
+         * @param numPlayers   The number of cars.
+         * @param numLocations The number of locations.
+         * @param offset       The radius the locations were placed with.
+         * @param sceneX       The width of the scene.
+         * @param sceneY       The height of the scene.
+         */
+        public Header(long seed, int statTotal, int numPlayers, int numLocations, double offset,
+                      double sceneX, double sceneY) {
+            this(seed, statTotal, numPlayers, numLocations, offset, sceneX, sceneY, 0);
+        }
+
+        /**
+         * @param seed         The seed the race was created with.
+         * @param statTotal    What each car's components add up to.
+         * @param numPlayers   The number of cars.
+         * @param numLocations The number of locations.
+         * @param offset       The radius the locations were placed with.
+         * @param sceneX       The width of the scene.
+         * @param sceneY       The height of the scene.
+         * @param roadNodes    About how many nodes the roads have, 0 to drive in straight lines.
+         */
+        public Header(long seed, int statTotal, int numPlayers, int numLocations, double offset,
+                      double sceneX, double sceneY, int roadNodes) {
+            this.seed = seed;
+            this.statTotal = statTotal;
+            this.numPlayers = numPlayers;
+            this.numLocations = numLocations;
+            this.offset = offset;
+            this.sceneX = sceneX;
+            this.sceneY = sceneY;
+            this.roadNodes = roadNodes;
+        }
+
+        /**
+         * @param buffer Receives the header.
+         */
+        public void write(ByteBuffer buffer) {
+            buffer.putInt(MAGIC).putShort(VERSION).putLong(seed).putInt(statTotal).putInt(numPlayers)
+                    .putInt(numLocations).putDouble(offset).putDouble(sceneX).putDouble(sceneY)
+                    .putInt(roadNodes);
+        }
+
+        /**
+         * @param buffer Holds a header at its position.
+         * @return The header.
+         * @throws IOException if the bytes are not a header this version can read.
+         */
+        public static Header read(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) throw new IOException("Not a replay log");
+            short version = buffer.getShort();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported replay log version " + version);
+            // Version 1 came before roads and is 4 bytes shorter.
+            if (buffer.remaining() < BYTES - 6 - (version == 1 ? 4 : 0)) throw new IOException("Not a replay log");
+            return new Header(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), version == 1 ? 0 : buffer.getInt());
+        }
+
+        /**
+         * Sets the race up again, exactly as it was before its first turn.
+         *
+         * @param locationX Receives the x coordinate of each location, may be null if they're not needed.
+         * @param locationY Receives the y coordinate of each location, may be null if they're not needed.
+         * @return The race.
+         */
+        public RaceEngine createRace(double[] locationX, double[] locationY) {
+            return createRace(locationX, locationY, createRoads(), null);
+        }
+
+        /**
+         * Sets the race up again on roads already made by createRoads.
+         *
+         * @param locationX Receives the x coordinate of each location, may be null if they're not needed.
+         * @param locationY Receives the y coordinate of each location, may be null if they're not needed.
+         * @param roads     The roads, null if the race is driven in straight lines.
+         * @param junctions Receives the junction each location is on, may be null if it's not needed.
+         * @return The race.
+         */
+        public RaceEngine createRace(double[] locationX, double[] locationY, RoadGraph roads, int[] junctions) {
+            if (locationX == null) locationX = new double[numLocations];
+            if (locationY == null) locationY = new double[numLocations];
+            return new TrackGenerator(seed).createRace(numPlayers, locationX, locationY, roads, junctions, offset,
+                    sceneX, sceneY, statTotal);
+        }
+
+        /**
+         * @return The road network the race is driven on, the same every time, or null for straight lines.
+         */
+        public RoadGraph createRoads() {
+            if (roadNodes == 0) return null;
+            return RoadGraph.generate(new Random(seed ^ ROADS), roadNodes, offset, offset, sceneX - offset - 300,
+                    sceneY - offset);
+        }
+
+        /**
+         * @return The seed the race was created with.
+         */
+        public long getSeed() { return seed; }
+
+        /**
+         * @return What each car's components add up to.
+         */
+        public int getStatTotal() { return statTotal; }
+
+        /**
+         * @return The number of cars.
+         */
+        public int getNumPlayers() { return numPlayers; }
+
+        /**
+         * @return The number of locations.
+         */
+        public int getNumLocations() { return numLocations; }
+
+        /**
+         * @return The radius the locations were placed with.
+         */
+        public double getOffset() { return offset; }
+
+        /**
+         * @return The width of the scene.
+         */
+        public double getSceneX() { return sceneX; }
+
+        /**
+         * @return The height of the scene.
+         */
+        public double getSceneY() { return sceneY; }
+
+        /**
+         * @return About how many nodes the roads have, 0 if the race is driven in straight lines.
+         */
+        public int getRoadNodes() { return roadNodes; }
+
+        /**
+         * @return The textual representation of the header.
+         */
+        @Override
+        public String toString() {
+            return "seed " + seed + ", " + numPlayers + " cars, " + numLocations + " locations"
+                    + (roadNodes > 0 ? ", " + roadNodes + " road nodes" : "");
+        }
+    }
+
+}
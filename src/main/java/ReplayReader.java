@@ -0,0 +1,129 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a ReplayLog back one turn at a time, a buffer of the file at a time.
+ * A log cut off in the middle of a move, say by a crash, simply ends at the last whole move.
+ */
+public class ReplayReader implements Closeable {
+
+    /**
+     * How many bytes are read at once.
+     */
+    private static final int BATCH = 65536;
+
+    /**
+     * The file being read.
+     */
+    private FileChannel channel;
+
+    /**
+     * The bytes read but not yet decoded.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * How the race was set up.
+     */
+    private ReplayLog.Header header;
+
+    /**
+     * The number of moves read so far.
+     */
+    private long moves;
+
+    /**
+     * Opens a log and reads its header.
+     *
+     * @param file The log.
+     * @throws IOException if the file can't be read or is not a replay log.
+     */
+    public ReplayReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer = ByteBuffer.allocate(BATCH);
+        buffer.limit(0);
+        try {
+            fill();
+            header = ReplayLog.Header.read(buffer);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return How the race was set up.
+     */
+    public ReplayLog.Header getHeader() { return header; }
+
+    /**
+     * @return The number of moves read so far.
+     */
+    public long getMoves() { return moves; }
+
+    /**
+     * @return Where the next move starts in the file.
+     * @throws IOException if the file can't be read.
+     */
+    public long getPosition() throws IOException {
+        return channel.position() - buffer.remaining();
+    }
+
+    /**
+     * Continues reading from another move.
+     *
+     * @param position Where the move starts in the file, as given by getPosition.
+     * @param move     How many moves come before it.
+     * @throws IOException if the file can't be read.
+     */
+    public void seek(long position, long move) throws IOException {
+        channel.position(position);
+        buffer.clear();
+        buffer.limit(0);
+        moves = move;
+    }
+
+    /**
+     * @return The location the next turn moved to, or -1 at the end of the log.
+     * @throws IOException if the file can't be read.
+     */
+    public int next() throws IOException {
+        if (buffer.remaining() < 5) fill();
+        int location = 0;
+        for (int shift = 0; buffer.hasRemaining(); shift += 7) {
+            byte b = buffer.get();
+            location |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                moves++;
+                return location;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads as many more as fit.
+     */
+    private void fill() throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) ;
+        buffer.flip();
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,67 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Records a race as one of its spectators: reads the moves off the race's RaceEventRing and appends them
+ * to a ReplayLog. A track drains it after every turn, on the thread that plays the race, so it never
+ * falls behind and the log holds every turn even if the game is closed midway.
+ */
+public class ReplayRecorder implements Closeable {
+
+    /**
+     * The log being written.
+     */
+    private final ReplayLog log;
+
+    /**
+     * Reads the events of the race.
+     */
+    private final RaceEventRing.Subscriber subscriber;
+
+    /**
+     * Receives each event read, reused for all of them.
+     */
+    private final RaceEvent event = new RaceEvent();
+
+    /**
+     * Creates the log and starts reading the events published from now on. Called before any turn is taken.
+     *
+     * @param events Where the race publishes its moves.
+     * @param file   The file to record to, replaced if it exists.
+     * @param header How the race was set up.
+     * @throws IOException if the file can't be written.
+     */
+    public ReplayRecorder(RaceEventRing events, Path file, ReplayLog.Header header) throws IOException {
+        log = new ReplayLog(file, header);
+        subscriber = events.subscribe();
+    }
+
+    /**
+     * Appends every move published since the last call and writes them out.
+     *
+     * @throws IOException if the log can't be written, or moves were overwritten before they were read.
+     */
+    public void drain() throws IOException {
+        while (subscriber.poll(event)) if (event.getType() == RaceEvent.MOVED) log.append(event.getLocation());
+        if (subscriber.getDropped() > 0) throw new IOException(subscriber.getDropped() + " race events were missed");
+        log.flush();
+    }
+
+    /**
+     * Appends what is left and closes the log.
+     *
+     * @throws IOException if the log can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            log.close();
+        }
+    }
+
+}
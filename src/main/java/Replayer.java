@@ -0,0 +1,82 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Plays recorded races again without a scene, as fast as the engine allows. Every move is checked
+ * against the rules, so a log that no longer replays points at a change in how races are set up or played.
+ */
+public class Replayer {
+
+    /**
+     * Plays a log to its end.
+     *
+     * @param file The log.
+     * @return The race after the last recorded move.
+     * @throws IOException           if the log can't be read.
+     * @throws IllegalStateException if a recorded move is not allowed.
+     */
+    public static RaceEngine replay(Path file) throws IOException {
+        try (ReplayReader reader = new ReplayReader(file)) {
+            RaceEngine engine = reader.getHeader().createRace(null, null);
+            for (int location = reader.next(); location >= 0; location = reader.next()) {
+                int car = engine.getActiveCar();
+                if (!engine.move(car, location))
+                    throw new IllegalStateException(file + ": move " + reader.getMoves() + " of car " + car
+                            + " to location " + location + " is not allowed");
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * Replays every log given, and every log in the directories given, across every core.
+     *
+     * @param args The logs and directories of logs.
+     * @throws IOException if a directory can't be listed.
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> files;
+        try (Stream<Path> found = Stream.of(args).map(Paths::get).flatMap(Replayer::walk)) {
+            files = found.collect(Collectors.toList());
+        }
+        AtomicLong failed = new AtomicLong(), unfinished = new AtomicLong(), moves = new AtomicLong();
+        long start = System.nanoTime();
+        files.parallelStream().forEach(file -> {
+            try {
+                RaceEngine engine = replay(file);
+                long turns = 0;
+                for (int c = 0; c < engine.getNumCars(); c++) turns += engine.getVisitedCount(c) - 1;
+                moves.addAndGet(turns);
+                if (!engine.isOver()) unfinished.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println(file + ": " + e.getMessage());
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(files.size() + " logs, " + failed + " failed, " + unfinished + " unfinished, "
+                + moves + " moves in " + String.format("%.2f", seconds) + " s ("
+                + String.format("%.0f", moves.get() / seconds) + " moves/s)");
+    }
+
+    /**
+     * @return The file, or every regular file under the directory.
+     */
+    private static Stream<Path> walk(Path path) {
+        try {
+            return Files.isDirectory(path) ? Files.walk(path).filter(Files::isRegularFile) : Stream.of(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
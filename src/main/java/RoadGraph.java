@@ -0,0 +1,338 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A road network for a track to be driven along instead of in straight lines. The roads are an
+ * undirected graph kept in compressed sparse rows: the roads leaving node v are target[first[v]] to
+ * target[first[v + 1] - 1], with their lengths in weight. Roads are as long as the straight line
+ * between their ends, scaled the same as DistanceMatrix. Routes are found on its ContractionHierarchy.
+ */
+public class RoadGraph {
+
+    /**
+     * The most locations whose distances can be worked out along the roads. Every pair is computed
+     * up front, so this keeps the matrix unpacked and at most 8 MB.
+     */
+    public static final int MAX_LOCATIONS = DistanceMatrix.PACKED_THRESHOLD;
+
+    /**
+     * The chance that a road which closes a loop is built anyway. Lower makes longer detours.
+     */
+    private static final double LOOP_CHANCE = 0.55;
+
+    /**
+     * Every this many rows and columns of junctions is an avenue: straight and never broken, so long
+     * routes take them the way they would in a real city.
+     */
+    private static final int AVENUE = 8;
+
+    /**
+     * The number of nodes a street is drawn through between two junctions.
+     */
+    private static final int BENDS = 3;
+
+    /**
+     * The coordinates of the nodes.
+     */
+    private double[] x, y;
+
+    /**
+     * Where the roads of each node start in target and weight, with one more entry for the end.
+     */
+    private int[] first;
+
+    /**
+     * The node each road leads to.
+     */
+    private int[] target;
+
+    /**
+     * The length of each road.
+     */
+    private double[] weight;
+
+    /**
+     * The roads contracted for quick routing, null until they're first needed.
+     */
+    private ContractionHierarchy hierarchy;
+
+    /**
+     * Builds the graph from a list of roads, each of which can be driven both ways.
+     *
+     * @param x     The x coordinate of each node.
+     * @param y     The y coordinate of each node.
+     * @param from  One end of each road.
+     * @param to    The other end of each road.
+     * @param roads The number of roads.
+     */
+    public RoadGraph(double[] x, double[] y, int[] from, int[] to, int roads) {
+        int n = x.length;
+        this.x = x;
+        this.y = y;
+        first = new int[n + 1];
+        for (int r = 0; r < roads; r++) {
+            first[from[r] + 1]++;
+            first[to[r] + 1]++;
+        }
+        for (int v = 0; v < n; v++) first[v + 1] += first[v];
+        target = new int[2 * roads];
+        weight = new double[2 * roads];
+        int[] next = Arrays.copyOf(first, n);
+        for (int r = 0; r < roads; r++) {
+            int a = from[r], b = to[r];
+            double length = Math.hypot(x[b] - x[a], y[b] - y[a]) / 100;
+            target[next[a]] = b;
+            weight[next[a]++] = length;
+            target[next[b]] = a;
+            weight[next[b]++] = length;
+        }
+    }
+
+    /**
+     * Lays out a city: a slightly crooked grid of junctions where each block side, and now and then a
+     * diagonal, is a candidate street. Candidates are taken in random order, each one that joins two parts
+     * not yet connected is always built and the rest only sometimes, so every node can reach every other.
+     * Streets bend a little and, like in real map data, are drawn through a few nodes of their own between
+     * junctions. Avenues stay straight, so long routes take them.
+     *
+     * @param rand  Random number generator.
+     * @param nodes About how many nodes to lay out, junctions and bends.
+     * @param minX  The smallest x coordinate.
+     * @param minY  The smallest y coordinate.
+     * @param maxX  The largest x coordinate.
+     * @param maxY  The largest y coordinate.
+     * @return The roads.
+     */
+    public static RoadGraph generate(Random rand, int nodes, double minX, double minY, double maxX, double maxY) {
+        double width = Math.max(maxX - minX, 1), height = Math.max(maxY - minY, 1);
+        // About 1.65 streets are built per junction.
+        int junctions = (int) (nodes / (1 + 1.65 * BENDS));
+        int cols = Math.max(2, (int) Math.round(Math.sqrt(junctions * width / height)));
+        int rows = Math.max(2, (junctions + cols - 1) / cols);
+        int n = cols * rows;
+        double cellX = width / cols, cellY = height / rows;
+        double[] jx = new double[n], jy = new double[n];
+        for (int v = 0; v < n; v++) {
+            int col = v % cols, row = v / cols;
+            double jitterX = 0.6 * (rand.nextDouble() - 0.5), jitterY = 0.6 * (rand.nextDouble() - 0.5);
+            jx[v] = minX + (col + 0.5 + (col % AVENUE == 0 ? 0 : jitterX)) * cellX;
+            jy[v] = minY + (row + 0.5 + (row % AVENUE == 0 ? 0 : jitterY)) * cellY;
+        }
+
+        int[] from = new int[3 * n], to = new int[3 * n];
+        int candidates = 0;
+        for (int v = 0; v < n; v++) {
+            int col = v % cols, row = v / cols;
+            if (col + 1 < cols) {
+                from[candidates] = v;
+                to[candidates++] = v + 1;
+            }
+            if (row + 1 < rows) {
+                from[candidates] = v;
+                to[candidates++] = v + cols;
+            }
+            if (col + 1 < cols && row + 1 < rows && rand.nextInt(10) == 0) {
+                from[candidates] = v;
+                to[candidates++] = v + cols + 1;
+            }
+        }
+        for (int i = candidates - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int a = from[i], b = to[i];
+            from[i] = from[j];
+            to[i] = to[j];
+            from[j] = a;
+            to[j] = b;
+        }
+
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++) parent[v] = v;
+        int streets = 0;
+        for (int i = 0; i < candidates; i++) {
+            int a = root(parent, from[i]), b = root(parent, to[i]);
+            boolean joins = a != b;
+            if (joins) parent[a] = b;
+            if (rand.nextDouble() < LOOP_CHANCE || joins || isAvenue(from[i], to[i], cols)) {
+                from[streets] = from[i];
+                to[streets++] = to[i];
+            }
+        }
+
+        // Junctions keep their numbers, the bends of street s are n + s * BENDS onward.
+        double[] x = Arrays.copyOf(jx, n + streets * BENDS), y = Arrays.copyOf(jy, n + streets * BENDS);
+        int[] roadFrom = new int[streets * (BENDS + 1)], roadTo = new int[streets * (BENDS + 1)];
+        int roads = 0;
+        for (int s = 0; s < streets; s++) {
+            int a = from[s], b = to[s];
+            double dx = jx[b] - jx[a], dy = jy[b] - jy[a];
+            double bend = isAvenue(a, b, cols) ? 0 : 0.4 * (rand.nextDouble() - 0.5);
+            int at = a;
+            for (int k = 1; k <= BENDS; k++) {
+                double t = (double) k / (BENDS + 1), out = bend * Math.sin(Math.PI * t);
+                int v = n + s * BENDS + k - 1;
+                x[v] = jx[a] + t * dx - out * dy;
+                y[v] = jy[a] + t * dy + out * dx;
+                roadFrom[roads] = at;
+                roadTo[roads++] = v;
+                at = v;
+            }
+            roadFrom[roads] = at;
+            roadTo[roads++] = b;
+        }
+        return new RoadGraph(x, y, roadFrom, roadTo, roads);
+    }
+
+    /**
+     * @return True if the candidate road is a block of an avenue.
+     */
+    private static boolean isAvenue(int a, int b, int cols) {
+        return b == a + 1 && (a / cols) % AVENUE == 0 || b == a + cols && (a % cols) % AVENUE == 0;
+    }
+
+    /**
+     * @return The part a node is connected to, halving the path to it on the way.
+     */
+    private static int root(int[] parent, int v) {
+        while (parent[v] != v) v = parent[v] = parent[parent[v]];
+        return v;
+    }
+
+    /**
+     * Moves each location onto the nearest junction no other location is on yet.
+     *
+     * @param locationX The x coordinate of each location, replaced by its junction's.
+     * @param locationY The y coordinate of each location, replaced by its junction's.
+     * @return The junction of each location.
+     * @throws IllegalArgumentException if there are more locations than junctions.
+     */
+    public int[] snap(double[] locationX, double[] locationY) {
+        int count = locationX.length;
+        if (count > size()) throw new IllegalArgumentException(count + " locations need more than " + size() + " junctions");
+        double spacing = Math.sqrt(area() / size());
+        SpatialIndex index = new SpatialIndex(x, y, spacing);
+        boolean[] taken = new boolean[size()];
+        int[] nodes = new int[count];
+        int[] best = new int[1];
+        double[] bestSq = new double[1];
+        for (int i = 0; i < count; i++) {
+            double px = locationX[i], py = locationY[i];
+            // Look in a growing square until the nearest free junction found is inside the circle it holds.
+            for (double reach = spacing; ; reach *= 2) {
+                best[0] = -1;
+                bestSq[0] = Double.POSITIVE_INFINITY;
+                index.forEachIn(px - reach, py - reach, px + reach, py + reach, v -> {
+                    double dx = x[v] - px, dy = y[v] - py, sq = dx * dx + dy * dy;
+                    if (!taken[v] && (sq < bestSq[0] || sq == bestSq[0] && v < best[0])) {
+                        best[0] = v;
+                        bestSq[0] = sq;
+                    }
+                });
+                if (best[0] >= 0 && bestSq[0] <= reach * reach) break;
+            }
+            nodes[i] = best[0];
+            taken[best[0]] = true;
+            locationX[i] = x[best[0]];
+            locationY[i] = y[best[0]];
+        }
+        return nodes;
+    }
+
+    /**
+     * @return The area of the box around the nodes, at least 1.
+     */
+    private double area() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < size(); v++) {
+            minX = Math.min(minX, x[v]);
+            minY = Math.min(minY, y[v]);
+            maxX = Math.max(maxX, x[v]);
+            maxY = Math.max(maxY, y[v]);
+        }
+        return Math.max((maxX - minX) * (maxY - minY), 1);
+    }
+
+    /**
+     * Works out the shortest route between every pair of locations.
+     *
+     * @param nodes The junction of each location.
+     * @return The lengths of the routes.
+     * @throws IllegalArgumentException if there are more than MAX_LOCATIONS locations.
+     */
+    public DistanceMatrix distances(int[] nodes) {
+        return getHierarchy().distances(nodes);
+    }
+
+    /**
+     * @return The roads contracted for quick routing, contracted the first time they're asked for.
+     */
+    public synchronized ContractionHierarchy getHierarchy() {
+        if (hierarchy == null) hierarchy = new ContractionHierarchy(this);
+        return hierarchy;
+    }
+
+    /**
+     * @return The number of junctions.
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * @return The number of roads, each counted once.
+     */
+    public int getNumRoads() {
+        return target.length / 2;
+    }
+
+    /**
+     * @param node The junction.
+     * @return Its x coordinate.
+     */
+    public double getX(int node) {
+        return x[node];
+    }
+
+    /**
+     * @param node The junction.
+     * @return Its y coordinate.
+     */
+    public double getY(int node) {
+        return y[node];
+    }
+
+    /**
+     * @param node The junction.
+     * @return Where its roads start in getTarget and getWeight.
+     */
+    public int getFirst(int node) {
+        return first[node];
+    }
+
+    /**
+     * @param node The junction.
+     * @return Where its roads end in getTarget and getWeight, exclusive.
+     */
+    public int getEnd(int node) {
+        return first[node + 1];
+    }
+
+    /**
+     * @param road The road, counted from getFirst of the junction it leaves.
+     * @return The junction it leads to.
+     */
+    public int getTarget(int road) {
+        return target[road];
+    }
+
+    /**
+     * @param road The road, counted from getFirst of the junction it leaves.
+     * @return Its length.
+     */
+    public double getWeight(int road) {
+        return weight[road];
+    }
+
+}
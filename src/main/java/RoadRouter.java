@@ -0,0 +1,214 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest routes on a ContractionHierarchy. A route is searched for from both ends at once,
+ * each side only taking roads up to more important junctions, until neither side can still beat the
+ * best meeting point found; shortcuts on the route are then expanded back into the roads they stand
+ * for. The per-junction buffers are allocated once and stamped with the number of the search that
+ * wrote them, so a search never clears anything and costs only what it visits. Not thread safe,
+ * use one router per thread.
+ */
+public class RoadRouter {
+
+    /**
+     * The contracted roads.
+     */
+    private ContractionHierarchy hierarchy;
+
+    /**
+     * Per side, forward from the start and backward from the destination: the length of the shortest
+     * way up found so far to each junction, the junction it came from, -1 at the end the side started
+     * from, and the upward road it came in on.
+     */
+    private double[][] cost = new double[2][];
+    private int[][] parent = new int[2][], road = new int[2][];
+
+    /**
+     * Per side, the search that last reached and settled each junction.
+     * Entries in cost, parent and road from any other search are left over.
+     */
+    private int[][] reached = new int[2][], settled = new int[2][];
+
+    /**
+     * The number of the current search.
+     */
+    private int search;
+
+    /**
+     * The junctions waiting to be settled on each side.
+     */
+    private NodeHeap[] heaps = {new NodeHeap(), new NodeHeap()};
+
+    /**
+     * The junctions settled by the last searchUp in order, or the route being expanded.
+     */
+    private int[] nodes = new int[256];
+    private int numNodes;
+
+    /**
+     * @param hierarchy The contracted roads.
+     */
+    public RoadRouter(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        int n = hierarchy.getGraph().size();
+        for (int side = 0; side < 2; side++) {
+            cost[side] = new double[n];
+            parent[side] = new int[n];
+            road[side] = new int[n];
+            reached[side] = new int[n];
+            settled[side] = new int[n];
+        }
+    }
+
+    /**
+     * @param from The junction to start at.
+     * @param to   The junction to get to.
+     * @return The length of the shortest route, infinite if there is none.
+     */
+    public double distance(int from, int to) {
+        int top = meet(from, to);
+        return top < 0 ? Double.POSITIVE_INFINITY : cost[0][top] + cost[1][top];
+    }
+
+    /**
+     * @param from The junction to start at.
+     * @param to   The junction to get to.
+     * @return The junctions along the shortest route, from and to included, or null if there is none.
+     */
+    public int[] route(int from, int to) {
+        int top = meet(from, to);
+        if (top < 0) return null;
+        // The forward side is walked down from the top, so it comes out backwards and is turned round.
+        numNodes = 0;
+        add(top);
+        for (int v = top; parent[0][v] >= 0; v = parent[0][v]) expand(v, parent[0][v], hierarchy.getMiddle(road[0][v]));
+        for (int i = 0, j = numNodes - 1; i < j; i++, j--) {
+            int swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        for (int v = top; parent[1][v] >= 0; v = parent[1][v]) expand(v, parent[1][v], hierarchy.getMiddle(road[1][v]));
+        return Arrays.copyOf(nodes, numNodes);
+    }
+
+    /**
+     * Adds the junctions a road or shortcut stands for to the route, leaving out the one it starts at.
+     *
+     * @param from    The junction the route has got to.
+     * @param to      The junction at the other end.
+     * @param through The junction the shortcut goes through, -1 for a road of the graph.
+     */
+    private void expand(int from, int to, int through) {
+        if (through < 0) {
+            add(to);
+            return;
+        }
+        // The junction a shortcut goes through was contracted before both its ends, so both halves are its upward roads.
+        expand(from, through, hierarchy.getMiddle(hierarchy.findRoad(through, from)));
+        expand(through, to, hierarchy.getMiddle(hierarchy.findRoad(through, to)));
+    }
+
+    /**
+     * Adds a junction to nodes.
+     */
+    private void add(int node) {
+        if (numNodes == nodes.length) nodes = Arrays.copyOf(nodes, numNodes * 2);
+        nodes[numNodes++] = node;
+    }
+
+    /**
+     * Searches upward from both ends, always going on with the side whose next junction is nearer,
+     * until neither side's next junction is nearer than the best meeting point found.
+     *
+     * @return The best meeting point, -1 if the ends aren't connected.
+     */
+    private int meet(int from, int to) {
+        start(0, from);
+        start(1, to);
+        double best = Double.POSITIVE_INFINITY;
+        int top = -1;
+        while (Math.min(heaps[0].peekKey(), heaps[1].peekKey()) < best) {
+            int side = heaps[0].peekKey() <= heaps[1].peekKey() ? 0 : 1;
+            double d = heaps[side].peekKey();
+            int v = heaps[side].pop();
+            if (settled[side][v] == search || d > cost[side][v]) continue;
+            settled[side][v] = search;
+            int other = 1 - side;
+            if (reached[other][v] == search && d + cost[other][v] < best) {
+                best = d + cost[other][v];
+                top = v;
+            }
+            climb(side, v);
+        }
+        return top;
+    }
+
+    /**
+     * Settles every junction reachable upward from one, for combining with other searches.
+     *
+     * @param from The junction to start at.
+     * @return The number of junctions settled. Copy them out with copySearch.
+     */
+    public int searchUp(int from) {
+        start(0, from);
+        numNodes = 0;
+        while (!heaps[0].isEmpty()) {
+            double d = heaps[0].peekKey();
+            int v = heaps[0].pop();
+            if (settled[0][v] == search || d > cost[0][v]) continue;
+            settled[0][v] = search;
+            add(v);
+            climb(0, v);
+        }
+        return numNodes;
+    }
+
+    /**
+     * @param nodes Receives the junctions the last searchUp settled.
+     * @param costs Receives how far up each of them is.
+     */
+    public void copySearch(int[] nodes, double[] costs) {
+        for (int k = 0; k < numNodes; k++) {
+            nodes[k] = this.nodes[k];
+            costs[k] = cost[0][this.nodes[k]];
+        }
+    }
+
+    /**
+     * Starts a side of a new search at a junction. Starting the forward side starts a new search.
+     */
+    private void start(int side, int from) {
+        if (side == 0 && ++search == Integer.MAX_VALUE) {
+            for (int s = 0; s < 2; s++) {
+                Arrays.fill(reached[s], 0);
+                Arrays.fill(settled[s], 0);
+            }
+            search = 1;
+        }
+        heaps[side].clear();
+        reached[side][from] = search;
+        cost[side][from] = 0;
+        parent[side][from] = -1;
+        heaps[side].push(0, from);
+    }
+
+    /**
+     * Reaches the junctions up the roads of a settled one where that is shorter than any way found so far.
+     */
+    private void climb(int side, int v) {
+        double at = cost[side][v];
+        for (int r = hierarchy.getFirst(v), end = hierarchy.getEnd(v); r < end; r++) {
+            int w = hierarchy.getTarget(r);
+            double through = at + hierarchy.getWeight(r);
+            if (reached[side][w] == search && through >= cost[side][w]) continue;
+            reached[side][w] = search;
+            cost[side][w] = through;
+            parent[side][w] = v;
+            road[side][w] = r;
+            heaps[side].push(through, w);
+        }
+    }
+
+}
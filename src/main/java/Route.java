@@ -0,0 +1,59 @@
+package main.java;
+
+/**
+ * An order in which a car visits locations, and how long driving it takes.
+ */
+public class Route {
+
+    /**
+     * The locations in the order they are visited, from the start to the end.
+     */
+    private int[] order;
+
+    /**
+     * The total time of the route.
+     */
+    private double time;
+
+    /**
+     * True if no route through the same locations is faster.
+     */
+    private boolean optimal;
+
+    /**
+     * @param order   The locations in the order they are visited.
+     * @param time    The total time of the route.
+     * @param optimal True if the route is proven to be the fastest.
+     */
+    public Route(int[] order, double time, boolean optimal) {
+        this.order = order;
+        this.time = time;
+        this.optimal = optimal;
+    }
+
+    /**
+     * @return The locations in the order they are visited, from the start to the end.
+     */
+    public int[] getOrder() { return order; }
+
+    /**
+     * @return The total time of the route.
+     */
+    public double getTime() { return time; }
+
+    /**
+     * @return True if the route is proven to be the fastest, false if the search ran out of time.
+     */
+    public boolean isOptimal() { return optimal; }
+
+    /**
+     * @return The textual representation of a route.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < order.length; i++) sb.append(i == 0 ? "" : " -> ").append(order[i]);
+        return sb.append("\t").append(String.format("%.1f", time)).append(optimal ? "" : " (best found)").toString();
+    }
+
+}
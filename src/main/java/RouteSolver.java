@@ -0,0 +1,427 @@
+package main.java;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the fastest order for a car to visit every location, starting at its start and finishing at its end.
+ * Legs are priced with the car's own components, so every car has its own answer.
+ * Up to MAX_DP_VIA locations between the start and the end are solved exactly with Held-Karp bitmask
+ * dynamic programming, one layer of subsets at a time across a ForkJoinPool. Beyond that a parallel
+ * branch-and-bound search is used, which takes exponential time at worst, so it stops at a time limit and
+ * returns the best route found so far.
+ */
+public class RouteSolver {
+
+    /**
+     * The most locations between the start and the end that are solved with dynamic programming.
+     * The table holds 2^n * n doubles, 20 of them take about 160 MB.
+     */
+    public static final int MAX_DP_VIA = 20;
+
+    /**
+     * How long branch-and-bound searches unless told otherwise, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_LIMIT = 1000;
+
+    /**
+     * Subsets below this many are not split between workers.
+     */
+    private static final int SPLIT = 1024;
+
+    /**
+     * The workers.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Branch-and-bound gives up after this many milliseconds, 0 for no limit.
+     */
+    private long timeLimit = DEFAULT_TIME_LIMIT;
+
+    /**
+     * Solves on the common pool.
+     */
+    public RouteSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool The workers to solve with.
+     */
+    public RouteSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param millis How long branch-and-bound may search before returning the best route found, 0 for no
+     *               limit. DEFAULT_TIME_LIMIT until set.
+     */
+    public void setTimeLimit(long millis) {
+        timeLimit = millis;
+    }
+
+    /**
+     * Prices every leg of the track for a car, a row at a time with LegKernel.
+     *
+     * @param stats     The components of the car.
+     * @param distances The distance between every pair of locations.
+     * @return The time of every leg, row-major.
+     */
+    public static double[] legTimes(CarStats stats, DistanceMatrix distances) {
+        int n = distances.size();
+        double[] cost = new double[n * n];
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) row[j] = distances.get(i, j);
+            LegKernel.price(row, 0, n, stats.getEngine(), stats.getTires(), stats.getWeight(), stats.getBoost(),
+                    stats.isBoosted(), cost, i * n);
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the fastest route for a car through every location.
+     *
+     * @param stats     The components of the car.
+     * @param distances The distance between every pair of locations.
+     * @param start     The location the car starts at.
+     * @param end       The location the car has to finish at.
+     * @return The fastest route.
+     */
+    public Route solve(CarStats stats, DistanceMatrix distances, int start, int end) {
+        return solve(legTimes(stats, distances), distances.size(), start, end);
+    }
+
+    /**
+     * Finds the fastest route for a car through every location, from legs priced once for the car.
+     *
+     * @param costs The time of every leg for the car, as kept by the RaceEngine.
+     * @param start The location the car starts at.
+     * @param end   The location the car has to finish at.
+     * @return The fastest route.
+     */
+    public Route solve(LegCosts costs, int start, int end) {
+        return solve(costs.toArray(), costs.size(), start, end);
+    }
+
+    /**
+     * @return The fastest route from start to end through every other location.
+     */
+    private Route solve(double[] cost, int n, int start, int end) {
+        int[] via = new int[Math.max(0, n - (start == end ? 1 : 2))];
+        for (int i = 0, k = 0; i < n; i++) if (i != start && i != end) via[k++] = i;
+        return solve(cost, n, start, end, via);
+    }
+
+    /**
+     * Finds the fastest route from start to end through the given locations.
+     *
+     * @param cost  The time of every leg, row-major.
+     * @param n     The number of locations.
+     * @param start The location to start at.
+     * @param end   The location to finish at.
+     * @param via   The locations to visit in between, not containing start or end.
+     * @return The fastest route.
+     */
+    public Route solve(double[] cost, int n, int start, int end, int[] via) {
+        int m = via.length;
+        if (m == 0) {
+            if (start == end) return new Route(new int[]{start}, 0, true);
+            return new Route(new int[]{start, end}, cost[start * n + end], true);
+        }
+        double[] local = new double[m * m];
+        double[] fromStart = new double[m];
+        double[] toEnd = new double[m];
+        for (int i = 0; i < m; i++) {
+            fromStart[i] = cost[start * n + via[i]];
+            toEnd[i] = cost[via[i] * n + end];
+            for (int j = 0; j < m; j++) local[i * m + j] = cost[via[i] * n + via[j]];
+        }
+        int[] path = new int[m];
+        double time;
+        boolean optimal = true;
+        if (m <= MAX_DP_VIA) time = heldKarp(local, fromStart, toEnd, m, path);
+        else {
+            Search search = branchAndBound(local, fromStart, toEnd, m, path);
+            time = search.bestTime();
+            optimal = !search.timedOut;
+        }
+        int[] order = new int[m + 2];
+        order[0] = start;
+        for (int i = 0; i < m; i++) order[i + 1] = via[path[i]];
+        order[m + 1] = end;
+        return new Route(order, time, optimal);
+    }
+
+    /**
+     * Held-Karp: dp[mask * m + j] is the fastest way from the start through every location in mask, ending at j.
+     * Subsets with k locations only read subsets with k - 1, so each layer is split between the workers.
+     *
+     * @return The time of the fastest route, its order is written to path.
+     */
+    private double heldKarp(double[] local, double[] fromStart, double[] toEnd, int m, int[] path) {
+        int full = (1 << m) - 1;
+        double[] dp = new double[(full + 1) * m];
+        for (int j = 0; j < m; j++) dp[(1 << j) * m + j] = fromStart[j];
+        int[] layer = new int[binomial(m, m / 2)];
+        for (int k = 2; k <= m; k++) {
+            int size = 0;
+            for (int mask = (1 << k) - 1; mask <= full; mask = nextMask(mask)) layer[size++] = mask;
+            pool.invoke(new Layer(dp, local, m, layer, 0, size));
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int last = 0;
+        for (int j = 0; j < m; j++) {
+            double t = dp[full * m + j] + toEnd[j];
+            if (t < best) {
+                best = t;
+                last = j;
+            }
+        }
+        // Walk back through the table, the predecessor is whichever i reproduces the stored value.
+        int mask = full;
+        for (int pos = m - 1; pos >= 0; pos--) {
+            path[pos] = last;
+            int prev = mask ^ (1 << last);
+            if (prev == 0) break;
+            double target = dp[mask * m + last];
+            for (int i = 0; i < m; i++) {
+                if ((prev & (1 << i)) != 0 && dp[prev * m + i] + local[i * m + last] == target) {
+                    last = i;
+                    break;
+                }
+            }
+            mask = prev;
+        }
+        return best;
+    }
+
+    /**
+     * Fills in one range of subsets of a Held-Karp layer.
+     */
+    @SuppressWarnings("serial")
+    private static class Layer extends RecursiveAction {
+        private double[] dp, local;
+        private int m, from, to;
+        private int[] masks;
+
+        Layer(double[] dp, double[] local, int m, int[] masks, int from, int to) {
+            this.dp = dp;
+            this.local = local;
+            this.m = m;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Layer(dp, local, m, masks, from, mid), new Layer(dp, local, m, masks, mid, to));
+                return;
+            }
+            for (int s = from; s < to; s++) {
+                int mask = masks[s];
+                for (int j = 0; j < m; j++) {
+                    if ((mask & (1 << j)) == 0) continue;
+                    int prev = mask ^ (1 << j);
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < m; i++) {
+                        if ((prev & (1 << i)) == 0) continue;
+                        double t = dp[prev * m + i] + local[i * m + j];
+                        if (t < best) best = t;
+                    }
+                    dp[mask * m + j] = best;
+                }
+            }
+        }
+    }
+
+    /**
+     * Branch-and-bound: depth first, cheapest leg first, pruned with the cheapest way into every remaining location.
+     * Each first leg is searched by its own worker, and they share the best time found.
+     *
+     * @return The finished search, the fastest order it found is written to path.
+     */
+    private Search branchAndBound(double[] local, double[] fromStart, double[] toEnd, int m, int[] path) {
+        double[] minIn = new double[m];
+        double endIn = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < m; j++) {
+            double min = fromStart[j];
+            for (int i = 0; i < m; i++) if (i != j) min = Math.min(min, local[i * m + j]);
+            minIn[j] = min;
+            endIn = Math.min(endIn, toEnd[j]);
+        }
+        // Nearest neighbour gives the first bound.
+        boolean[] used = new boolean[m];
+        int at = -1;
+        double greedy = 0;
+        for (int pos = 0; pos < m; pos++) {
+            int next = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < m; j++) {
+                if (used[j]) continue;
+                double t = at < 0 ? fromStart[j] : local[at * m + j];
+                if (t < best) {
+                    best = t;
+                    next = j;
+                }
+            }
+            used[next] = true;
+            path[pos] = next;
+            greedy += best;
+            at = next;
+        }
+        greedy += toEnd[at];
+
+        Search search = new Search(local, fromStart, toEnd, minIn, endIn, m, greedy, path,
+                timeLimit > 0 ? System.nanoTime() + timeLimit * 1_000_000L : Long.MAX_VALUE);
+        pool.invoke(search);
+        return search;
+    }
+
+    /**
+     * The shared state of a branch-and-bound search. Forks one Branch per first leg.
+     */
+    @SuppressWarnings("serial")
+    private static class Search extends RecursiveAction {
+        private double[] local, fromStart, toEnd, minIn;
+        private double endIn;
+        private int m;
+        private AtomicLong best;
+        private int[] bestPath;
+        private long deadline;
+        private volatile boolean timedOut;
+
+        Search(double[] local, double[] fromStart, double[] toEnd, double[] minIn, double endIn, int m,
+               double bound, int[] bestPath, long deadline) {
+            this.local = local;
+            this.fromStart = fromStart;
+            this.toEnd = toEnd;
+            this.minIn = minIn;
+            this.endIn = endIn;
+            this.m = m;
+            this.best = new AtomicLong(Double.doubleToLongBits(bound));
+            this.bestPath = bestPath;
+            this.deadline = deadline;
+        }
+
+        double bestTime() {
+            return Double.longBitsToDouble(best.get());
+        }
+
+        @Override
+        protected void compute() {
+            Branch[] branches = new Branch[m];
+            for (int j = 0; j < m; j++) branches[j] = new Branch(this, j);
+            invokeAll(branches);
+        }
+
+        /**
+         * Records a faster complete route.
+         */
+        synchronized void offer(double time, int[] path) {
+            if (time < bestTime()) {
+                best.set(Double.doubleToLongBits(time));
+                System.arraycopy(path, 0, bestPath, 0, m);
+            }
+        }
+    }
+
+    /**
+     * Searches every route that begins with one first leg.
+     */
+    @SuppressWarnings("serial")
+    private static class Branch extends RecursiveAction {
+        private Search s;
+        private int first;
+        private int[] path;
+        private boolean[] used;
+        private long nodes;
+
+        /**
+         * The locations left at each depth, cheapest leg first. Made once per branch rather than per node.
+         */
+        private int[][] orders;
+
+        Branch(Search s, int first) {
+            this.s = s;
+            this.first = first;
+        }
+
+        @Override
+        protected void compute() {
+            int m = s.m;
+            path = new int[m];
+            used = new boolean[m];
+            orders = new int[m][];
+            for (int depth = 1; depth < m; depth++) orders[depth] = new int[m - depth];
+            double remaining = s.endIn;
+            for (int j = 0; j < m; j++) remaining += s.minIn[j];
+            path[0] = first;
+            used[first] = true;
+            dfs(1, first, s.fromStart[first], remaining - s.minIn[first]);
+        }
+
+        private void dfs(int depth, int at, double time, double remaining) {
+            if (s.timedOut) return;
+            if ((++nodes & 0xFFF) == 0 && System.nanoTime() > s.deadline) {
+                s.timedOut = true;
+                return;
+            }
+            int m = s.m;
+            if (depth == m) {
+                double total = time + s.toEnd[at];
+                if (total < s.bestTime()) s.offer(total, path);
+                return;
+            }
+            // Cheapest leg first so good bounds are found early.
+            int[] order = orders[depth];
+            int count = 0;
+            for (int j = 0; j < m; j++) if (!used[j]) order[count++] = j;
+            for (int a = 1; a < count; a++) {
+                int v = order[a];
+                double key = s.local[at * m + v];
+                int b = a - 1;
+                while (b >= 0 && s.local[at * m + order[b]] > key) {
+                    order[b + 1] = order[b];
+                    b--;
+                }
+                order[b + 1] = v;
+            }
+            for (int k = 0; k < count; k++) {
+                int j = order[k];
+                double t = time + s.local[at * m + j];
+                double rest = remaining - s.minIn[j];
+                if (t + rest >= s.bestTime()) continue;
+                used[j] = true;
+                path[depth] = j;
+                dfs(depth + 1, j, t, rest);
+                used[j] = false;
+            }
+        }
+    }
+
+    /**
+     * Gosper's hack: the next larger integer with the same number of set bits.
+     */
+    private static int nextMask(int mask) {
+        int c = mask & -mask;
+        int r = mask + c;
+        return (((r ^ mask) >>> 2) / c) | r;
+    }
+
+    /**
+     * @return n choose k.
+     */
+    private static int binomial(int n, int k) {
+        long r = 1;
+        for (int i = 1; i <= k; i++) r = r * (n - k + i) / i;
+        return (int) r;
+    }
+
+}
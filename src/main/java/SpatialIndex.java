@@ -0,0 +1,121 @@
+package main.java;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid over a fixed set of points, for finding the points near a position without
+ * looking at all of them. Points are stored cell by cell in one array, cellStart marks where
+ * each cell's points begin.
+ */
+public class SpatialIndex {
+
+    /**
+     * The coordinates of the points.
+     */
+    private double[] xs, ys;
+
+    /**
+     * The origin and width of the cells.
+     */
+    private double minX, minY, cell;
+
+    /**
+     * The number of columns and rows of cells.
+     */
+    private int cols, rows;
+
+    /**
+     * The points of cell c are items[cellStart[c]] to items[cellStart[c + 1] - 1].
+     */
+    private int[] cellStart, items;
+
+    /**
+     * @param xs   The x coordinate of each point.
+     * @param ys   The y coordinate of each point.
+     * @param cell The width of a cell. About the distance most queries reach works best.
+     */
+    public SpatialIndex(double[] xs, double[] ys, double cell) {
+        this.xs = xs;
+        this.ys = ys;
+        this.cell = cell;
+        int n = xs.length;
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if (n == 0) minX = minY = maxX = maxY = 0;
+        cols = (int) ((maxX - minX) / cell) + 1;
+        rows = (int) ((maxY - minY) / cell) + 1;
+        cellStart = new int[cols * rows + 1];
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = column(xs[i]) + row(ys[i]) * cols;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) cellStart[c + 1] += cellStart[c];
+        items = new int[n];
+        int[] fill = new int[cols * rows];
+        for (int i = 0; i < n; i++) items[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cell)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cell)));
+    }
+
+    /**
+     * @param x           The x coordinate.
+     * @param y           The y coordinate.
+     * @param maxDistance How far away the point may be.
+     * @return The point nearest to (x, y) within maxDistance, or -1 if there is none.
+     */
+    public int nearest(double x, double y, double maxDistance) {
+        int best = -1;
+        double bestSq = maxDistance * maxDistance;
+        for (int r = row(y - maxDistance); r <= row(y + maxDistance); r++) {
+            for (int c = column(x - maxDistance); c <= column(x + maxDistance); c++) {
+                int cellIndex = r * cols + c;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int i = items[k];
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    double sq = dx * dx + dy * dy;
+                    if (sq <= bestSq) {
+                        bestSq = sq;
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Visits every point inside a rectangle.
+     *
+     * @param x1     The left edge.
+     * @param y1     The top edge.
+     * @param x2     The right edge.
+     * @param y2     The bottom edge.
+     * @param action Receives the index of each point.
+     */
+    public void forEachIn(double x1, double y1, double x2, double y2, IntConsumer action) {
+        for (int r = row(y1); r <= row(y2); r++) {
+            for (int c = column(x1); c <= column(x2); c++) {
+                int cellIndex = r * cols + c;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int i = items[k];
+                    if (xs[i] >= x1 && xs[i] <= x2 && ys[i] >= y1 && ys[i] <= y2) action.accept(i);
+                }
+            }
+        }
+    }
+
+}
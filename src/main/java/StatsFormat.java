@@ -0,0 +1,27 @@
+package main.java;
+
+/**
+ * Formats the numbers of the stats panel without String.format, reusing one buffer.
+ * Only used on the JavaFX application thread.
+ */
+public class StatsFormat {
+
+    /**
+     * The reused buffer.
+     */
+    private static final StringBuilder buffer = new StringBuilder(16);
+
+    private StatsFormat() {
+    }
+
+    /**
+     * @param value A non-negative number.
+     * @return The number rounded to one decimal, as String.format("%.1f") would show it.
+     */
+    public static String tenths(double value) {
+        long tenths = Math.round(value * 10);
+        buffer.setLength(0);
+        return buffer.append(tenths / 10).append('.').append(tenths % 10).toString();
+    }
+
+}
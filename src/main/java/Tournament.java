@@ -0,0 +1,326 @@
+package main.java;
+
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Plays many seeded races without a scene, across every core, to see which stat allocations win.
+ * Races are folded into Results as soon as they finish, so memory stays constant no matter how
+ * many are played, and partial Results are handed out after every batch.
+ */
+public class Tournament {
+
+    /**
+     * What each car's components add up to, as in Track.
+     */
+    public static final int STAT_TOTAL = 26;
+
+    /**
+     * The number of cars in each race.
+     */
+    private int numPlayers;
+
+    /**
+     * The size of the scene the tracks are laid out on.
+     */
+    private double offset, sceneX, sceneY;
+
+    /**
+     * Creates a driver for each car of each race.
+     */
+    private Supplier<Driver> drivers;
+
+    /**
+     * How long a driver may think about each turn, in milliseconds. 0 lets it run to completion.
+     */
+    private long budgetMillis;
+
+    /**
+     * Solves every car's fastest route to measure how far it finished from it.
+     */
+    private RouteSolver solver;
+
+    /**
+     * @param numPlayers The number of cars in each race.
+     * @param drivers    Creates a driver for each car of each race.
+     * @param budgetMillis How long a driver may think about each turn, 0 to let it run to completion.
+     *                     Drivers that search until their deadline, like MonteCarloDriver, need a budget.
+     */
+    public Tournament(int numPlayers, Supplier<Driver> drivers, long budgetMillis) {
+        this.numPlayers = numPlayers;
+        this.drivers = drivers;
+        this.budgetMillis = budgetMillis;
+        offset = 64;
+        sceneX = 1920;
+        sceneY = 1080;
+    }
+
+    /**
+     * Measures every car against its fastest route. Only tracks the solver can solve exactly are measured.
+     *
+     * @param solver The solver, null to skip measuring.
+     */
+    public void setSolver(RouteSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Plays races with the seeds firstSeed to firstSeed + races - 1 in parallel.
+     *
+     * @param firstSeed   The seed of the first race.
+     * @param races       The number of races.
+     * @param batch       How many races are played between progress reports.
+     * @param progress    Receives the results so far after every batch, may be null.
+     * @return The results of every race.
+     */
+    public Results run(long firstSeed, long races, long batch, Consumer<Results> progress) {
+        Results total = new Results();
+        for (long from = 0; from < races; from += batch) {
+            long to = Math.min(races, from + batch);
+            Results part = LongStream.range(firstSeed + from, firstSeed + to).parallel()
+                    .collect(Results::new, (r, seed) -> r.add(play(seed), solver), Results::merge);
+            total.merge(part);
+            if (progress != null) progress.accept(total);
+        }
+        return total;
+    }
+
+    /**
+     * Plays one race to the end.
+     *
+     * @param seed The seed of the race.
+     * @return The finished race.
+     */
+    public RaceEngine play(long seed) {
+        RaceEngine engine = new TrackGenerator(new Random(seed)).createRace(numPlayers, offset, sceneX, sceneY, STAT_TOTAL);
+        Driver[] driver = new Driver[numPlayers];
+        for (int j = 0; j < numPlayers; j++) driver[j] = drivers.get();
+        while (!engine.isOver()) {
+            int car = engine.getActiveCar();
+            long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+            engine.move(car, driver[car].chooseNext(engine, car, deadline));
+        }
+        return engine;
+    }
+
+    /**
+     * Win rates per stat allocation, the distribution of finishing times and the mean gap to the
+     * fastest route, folded together race by race.
+     */
+    public static class Results {
+
+        /**
+         * The width of a bucket of the time histogram, in hours.
+         */
+        public static final double BUCKET = 0.5;
+
+        /**
+         * The number of buckets of the time histogram, the last one holds everything slower.
+         */
+        public static final int BUCKETS = 200;
+
+        /**
+         * The number of distinct stat allocations: engine, tires and weight 1-10, boost 0-23.
+         */
+        private static final int PROFILES = 11 * 11 * 11 * 24;
+
+        /**
+         * Races entered and won, per stat allocation.
+         */
+        private long[] entered = new long[PROFILES], won = new long[PROFILES];
+
+        /**
+         * The finishing times of every car.
+         */
+        private long[] histogram = new long[BUCKETS];
+
+        /**
+         * The number of races, the number of cars and the number of cars measured against their fastest route.
+         */
+        private long races, cars, measured;
+
+        /**
+         * Running mean and sum of squared deviations of the finishing times (Welford).
+         */
+        private double mean, m2;
+
+        /**
+         * The sum of the relative gaps to the fastest route.
+         */
+        private double gapSum;
+
+        /**
+         * How many legs were found already priced, and how many had to be priced.
+         */
+        private long legHits, legMisses;
+
+        /**
+         * @param cars The cars of a race.
+         * @param car  The car.
+         * @return The index of the car's stat allocation.
+         */
+        public static int profile(CarState cars, int car) {
+            return ((cars.getEngine(car) * 11 + cars.getTires(car)) * 11 + cars.getWeight(car)) * 24 + cars.getBoost(car);
+        }
+
+        /**
+         * Folds in a finished race.
+         *
+         * @param engine The finished race.
+         * @param solver Measures each car against its fastest route, may be null.
+         */
+        public void add(RaceEngine engine, RouteSolver solver) {
+            races++;
+            won[profile(engine.getCars(), engine.getWinner())]++;
+            boolean measure = solver != null && engine.getNumLocations() - 2 <= RouteSolver.MAX_DP_VIA;
+            for (int c = 0; c < engine.getNumCars(); c++) {
+                double time = engine.getTime(c);
+                entered[profile(engine.getCars(), c)]++;
+                legHits += engine.getLegCosts(c).getHits();
+                legMisses += engine.getLegCosts(c).getMisses();
+                histogram[Math.min(BUCKETS - 1, (int) (time / BUCKET))]++;
+                cars++;
+                double delta = time - mean;
+                mean += delta / cars;
+                m2 += delta * (time - mean);
+                if (measure) {
+                    double best = solver.solve(engine.getLegCosts(c), engine.getStart(c), engine.getEnd(c)).getTime();
+                    gapSum += (time - best) / best;
+                    measured++;
+                }
+            }
+        }
+
+        /**
+         * Folds in results of other races.
+         *
+         * @param other The other results.
+         */
+        public void merge(Results other) {
+            for (int p = 0; p < PROFILES; p++) {
+                entered[p] += other.entered[p];
+                won[p] += other.won[p];
+            }
+            for (int b = 0; b < BUCKETS; b++) histogram[b] += other.histogram[b];
+            long total = cars + other.cars;
+            if (total > 0) {
+                double delta = other.mean - mean;
+                m2 += other.m2 + delta * delta * cars * other.cars / total;
+                mean += delta * other.cars / total;
+            }
+            cars = total;
+            races += other.races;
+            measured += other.measured;
+            gapSum += other.gapSum;
+            legHits += other.legHits;
+            legMisses += other.legMisses;
+        }
+
+        /**
+         * @return The number of races played.
+         */
+        public long getRaces() { return races; }
+
+        /**
+         * @return The mean finishing time of every car.
+         */
+        public double getMeanTime() { return mean; }
+
+        /**
+         * @return The standard deviation of the finishing times.
+         */
+        public double getTimeDeviation() { return cars > 1 ? Math.sqrt(m2 / (cars - 1)) : 0; }
+
+        /**
+         * @return How much slower than their fastest route cars finished on average, 0.1 being 10%.
+         */
+        public double getMeanGap() { return measured > 0 ? gapSum / measured : Double.NaN; }
+
+        /**
+         * @return The share of legs that were found already priced.
+         */
+        public double getLegHitRate() {
+            return legHits + legMisses > 0 ? (double) legHits / (legHits + legMisses) : Double.NaN;
+        }
+
+        /**
+         * @param bucket The bucket, each BUCKET hours wide.
+         * @return The number of cars that finished within the bucket.
+         */
+        public long getHistogram(int bucket) { return histogram[bucket]; }
+
+        /**
+         * @param engine The engine component.
+         * @param tires  The tires component.
+         * @param weight The weight component.
+         * @param boost  The boost component.
+         * @return The share of races entered with the allocation that were won, NaN if none were entered.
+         */
+        public double getWinRate(int engine, int tires, int weight, int boost) {
+            int p = ((engine * 11 + tires) * 11 + weight) * 24 + boost;
+            return entered[p] > 0 ? (double) won[p] / entered[p] : Double.NaN;
+        }
+
+        /**
+         * @param top         How many allocations to list.
+         * @param minEntered  Allocations entered fewer times than this are left out.
+         * @return The allocations with the best win rate, best first.
+         */
+        public String bestProfiles(int top, long minEntered) {
+            StringBuilder sb = new StringBuilder("Engine\tTires\tWeight\tBoost\tWin rate\tRaces\n");
+            boolean[] listed = new boolean[PROFILES];
+            for (int k = 0; k < top; k++) {
+                int best = -1;
+                for (int p = 0; p < PROFILES; p++) {
+                    if (listed[p] || entered[p] < minEntered || entered[p] == 0) continue;
+                    if (best < 0 || won[p] * entered[best] > won[best] * entered[p]) best = p;
+                }
+                if (best < 0) break;
+                listed[best] = true;
+                sb.append(best / (11 * 11 * 24)).append('\t').append(best / (11 * 24) % 11).append('\t')
+                        .append(best / 24 % 11).append('\t').append(best % 24).append('\t')
+                        .append(String.format("%.3f", (double) won[best] / entered[best])).append("\t\t")
+                        .append(entered[best]).append('\n');
+            }
+            return sb.toString();
+        }
+
+        /**
+         * @return The textual representation of the results.
+         */
+        @Override
+        public String toString() {
+            return races + " races, " + cars + " cars\tmean time " + String.format("%.2f", mean)
+                    + " (sd " + String.format("%.2f", getTimeDeviation()) + ")\tmean gap to fastest "
+                    + (measured > 0 ? String.format("%.1f%%", getMeanGap() * 100) : "n/a")
+                    + "\tleg hit rate " + String.format("%.1f%%", getLegHitRate() * 100);
+        }
+    }
+
+    /**
+     * Runs a tournament from the command line.
+     *
+     * @param args Number of races, number of players, driver (greedy, local or monte) and first seed.
+     */
+    public static void main(String[] args) {
+        long races = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        String kind = args.length > 2 ? args[2] : "greedy";
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        Supplier<Driver> drivers;
+        switch (kind) {
+            case "local": drivers = LocalSearchDriver::new; break;
+            case "monte": drivers = () -> new MonteCarloDriver(new Random(seed)); break;
+            default: drivers = GreedyDriver::new;
+        }
+        Tournament tournament = new Tournament(players, drivers, kind.equals("monte") ? 1 : 0);
+        tournament.setSolver(new RouteSolver());
+        long start = System.nanoTime();
+        Results results = tournament.run(seed, races, Math.max(1, races / 10), r ->
+                System.out.println(r + "\t" + String.format("%.0f", r.getRaces() / ((System.nanoTime() - start) / 1e9)) + " races/s"));
+        System.out.print(results.bestProfiles(10, Math.max(1, races / 10000)));
+    }
+
+}
@@ -1,12 +1,13 @@
 package main.java; 
 
-import javafx.animation.PathTransition;
 import javafx.event.EventHandler;
-import javafx.geometry.BoundingBox;
 import javafx.geometry.Pos;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.collections.FXCollections;
 import javafx.scene.Group;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 import javafx.scene.effect.Glow;
-import javafx.scene.image.Image;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
 import javafx.scene.paint.Color;
@@ -15,17 +16,21 @@ import javafx.scene.shape.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
-import javafx.util.Duration;
 
-import java.net.URL;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * The track is the layer where the turn based sequence is controlled.
- * A group of graphical components, together creates the game aspect of the program
+ * A group of graphical components, together creates the game aspect of the program.
+ * Once the race is set up, only the game-logic thread touches the engine: clicks and the bots' choices
+ * are handed to it as commands, and it publishes a TurnDiff per move, which the JavaFX application
+ * thread applies in batches.
  */
 public class Track extends Group {
 
@@ -45,103 +50,176 @@ public class Track extends Group {
     private Car activeCar;
 
     /**
-     * gridPane contains a grid-pane of cars, and one of locations
+     * gridPane contains a table of cars, and one of locations
      * Contains the information about the active car's current location,
      * the distances from the active car's current location,
      * as well as the time that each player has driven.
+     * The tables only create cells for the rows on screen, and rows only change when their values do.
      */
-    private GridPane gridPane, gpCars, gpLocations;
+    private GridPane gridPane;
+    private TableView<CarRow> carTable;
+    private TableView<LocationRow> locationTable;
 
     /**
-     * Reference to a car's start location.
+     * The rules of the race. Owns every car's start, end, current and visited locations.
+     * Only used on the game-logic thread once the race is set up.
      */
-    private Map<Car, Location> carStartLocation;
+    private RaceEngine engine;
 
     /**
-     * Reference to a car's end location.
+     * The distance between every pair of locations. Built once per track.
      */
-    private Map<Car, Location> carEndLocation;
+    private DistanceMatrix distances;
 
     /**
-     * Reference to a car's current location;
+     * The position and flags of every location, which the Location nodes show.
      */
-    private Map<Car, Location> carCurrentLocation;
+    private LocationState locationState;
 
+    /**
+     * The game-logic thread, which applies every turn to the engine one at a time, records the race and
+     * plans the turns of computer controlled cars.
+     */
+    private GameLogic logic;
+
+    /**
+     * Hands what each turn changed to the JavaFX application thread.
+     */
+    private FxPublisher<TurnDiff> publisher;
+
+    /**
+     * How each location was last published to look, and scratch space for the locations that changed.
+     * Only used on the game-logic thread.
+     */
+    private byte[] shown, looks;
+    private int[] changed;
+
+    /**
+     * True once the track has been left, after which turns are ignored.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * The server the race is played on, null when it is played here.
+     */
+    private RaceClient client;
+
+    /**
+     * The cars driven from here when the race is played on a server.
+     */
+    private int firstLocal, numLocal;
+
+    /**
+     * The layer below the cars holding every car's trail.
+     */
+    private Group trailLayer;
+
+    /**
+     * The path each car has driven, one Polyline per car.
+     */
+    private Polyline[] trails;
+
+    /**
+     * Drives every car along its legs.
+     */
+    private CarMotion motion;
+
+    private ArrayList<LocationRow> locationRows;
+    private ArrayList<CarRow> carRows;
 
     /**
-     * Reference to the locations a car has visited.
+     * Every car's end, which never changes.
      */
-    private Map<Car, ArrayList<Location>> carVisitedLocations;
+    private int[] ends;
 
-    private ArrayList<Text> locationLabels;
-    private ArrayList<Text> carLabels;
+    /**
+     * The car rows from first to last by projected finish.
+     */
+    private CarRow[] rankedRows;
     private Text activeCarLabel;
     private Rectangle activeCarBox;
 
+    /**
+     * How the race was set up.
+     */
+    private ReplayLog.Header header;
+
+
     /**
      * Initializes the collections for locations and cars.
      */
     public Track() {
         locations = new ArrayList<>();
         cars = new ArrayList<>();
-        carVisitedLocations = new HashMap<>();
-        carStartLocation = new HashMap<>();
-        carEndLocation = new HashMap<>();
-        carCurrentLocation = new HashMap<>();
-        locationLabels = new ArrayList<>();
-        carLabels = new ArrayList<>();
+        locationRows = new ArrayList<>();
+        carRows = new ArrayList<>();
     }
 
     /**
-     * The way that the cars and locations are initialized.
+     * The way that the cars and locations are initialized, from a random seed.
      *
      * @param numPlayers The number of locations corresponds to combo-box selection from StartPrompt in View.
      * @param sceneX     The width of the main Screen from View.
      * @param sceneY     The height of the main Screen from View.
      */
     public void setTrack(int numPlayers, double offset, double sceneX, double sceneY) {
-        Random rand = new Random();
-        // for the number of players, number of locations changes, the addition of 2 or 3 extra locations is arbitrary
-        int numLocation = (numPlayers & 1) == 1 ? numPlayers + 2 : numPlayers + 3;
-        createLocations(numLocation, offset, sceneX, sceneY, rand);
-        createCars(numPlayers, offset, rand);
-        activeCar = cars.get(0);
+        setTrack(numPlayers, offset, sceneX, sceneY, new Random().nextLong());
+    }
+
+    /**
+     * The way that the cars and locations are initialized. The same seed always gives the same race.
+     *
+     * @param numPlayers The number of locations corresponds to combo-box selection from StartPrompt in View.
+     * @param sceneX     The width of the main Screen from View.
+     * @param sceneY     The height of the main Screen from View.
+     * @param seed       The seed every random choice of the race is drawn from.
+     */
+    public void setTrack(int numPlayers, double offset, double sceneX, double sceneY, long seed) {
+        setTrack(new ReplayLog.Header(seed, Tournament.STAT_TOTAL, numPlayers, TrackGenerator.locationsFor(numPlayers),
+                offset, sceneX, sceneY));
+    }
+
+    /**
+     * Sets up a race exactly as described, say by a RaceServer.
+     *
+     * @param header How the race is set up.
+     */
+    public void setTrack(ReplayLog.Header header) {
+        long start = System.nanoTime();
+        int numPlayers = header.getNumPlayers(), numLocation = header.getNumLocations();
+        double offset = header.getOffset(), sceneX = header.getSceneX(), sceneY = header.getSceneY();
+        double[] locationX = new double[numLocation];
+        double[] locationY = new double[numLocation];
+        this.header = header;
+        engine = header.createRace(locationX, locationY);
+        distances = engine.getDistances();
+        locationState = new LocationState(locationX, locationY);
+        createLocations(offset);
+        createCars(numPlayers, offset);
+        activeCar = cars.get(engine.getActiveCar());
         activeCar.setVisible(true);
-        carStartLocation.get(activeCar).setActive(false, false);
-        for (Location location : locations)
-            if (carEndLocation.get(activeCar).equals(location))
-                location.setActive(false, true);
+        shown = new byte[numLocation];
+        looks = new byte[numLocation];
+        changed = new int[numLocation];
+        for (int i = 0; i < numLocation; i++) {
+            shown[i] = TurnDiff.lookFor(engine, activeCar.getIdentifier(), i);
+            show(locations.get(i), shown[i]);
+        }
         setGridPane(sceneX, sceneY);
+        publisher = new FxPublisher<>(this::apply);
+        logic = new GameLogic(engine, header, this::submit);
+        Metrics.TRACK.recordSince(start);
     }
 
     /**
      * Creates the locations in relation to how many players selected. Called in setTrack, separated for clarity.
      *
-     * @param numLocation Number of locations.
-     * @param offset      Relative sizing.
-     * @param sceneX      Scene's width.
-     * @param sceneY      Scene's Height.
-     * @param rand        Random number generator.
-     */
-    private void createLocations(int numLocation, double offset, double sceneX, double sceneY, Random rand) {
-        for (int k = 0; k < numLocation; k++) {
-            int tmpOffSetX = (int) sceneX - ((int) offset * 2);
-            int tmpOffsetY = (int) sceneY - ((int) offset * 2);
-            double x = rand.nextInt(tmpOffSetX - 300);
-            double y = rand.nextInt(tmpOffsetY);
-            for (Location lo : locations) {
-                if (lo.intersects(new BoundingBox(x, y, offset * 2, offset * 2))) {
-                    x = rand.nextInt(tmpOffSetX - 300);
-                    y = rand.nextInt(tmpOffsetY);
-                }
-            }
-            if (x < offset) x += (offset + 10); // Attempts to buffer location from being placed off-screen.
-            if (y < offset) y += (offset + 10);
-            if (y > sceneY - offset) y -= (offset + 10);
-            if (x > sceneX - offset) x -= (offset + 10);
-            locations.add(new Location(x, y, offset, "Location " + k));            // adds new locations
+     * @param offset    Relative sizing.
+     */
+    private void createLocations(double offset) {
+        for (int k = 0; k < locationState.size(); k++) {
+            locations.add(new Location(locationState, k, offset));            // adds new locations
             locations.get(k).setOnMouseClicked(locationEvent);
-
         }
         for (int i = 0; i < locations.size(); i++) {
             Location toAdd = locations.get(i);
@@ -155,30 +233,26 @@ public class Track extends Group {
      *
      * @param numPlayers The number of cars to be created in relation to the number of players
      * @param offset     The sizing offset.
-     * @param rand       Random number generator.
      */
-    private void createCars(int numPlayers, double offset, Random rand) {
-        ArrayList<Location> forStart = new ArrayList<>();
-        ArrayList<Location> forEnd = new ArrayList<>();
+    private void createCars(int numPlayers, double offset) {
+        Color[] color = {Color.RED, Color.BLUE, Color.BLACK, Color.YELLOW, Color.ORANGE};
+        trailLayer = new Group();
+        trails = new Polyline[numPlayers];
+        motion = new CarMotion(numPlayers, .5);
+        this.getChildren().add(trailLayer);
         for (int j = 0; j < numPlayers; j++) {
-            Location start = locations.get(rand.nextInt(locations.size()));
-            Location end = locations.get(rand.nextInt(locations.size()));
-            while (forStart.contains(start)) start = locations.get(rand.nextInt(locations.size()));
-            while (forEnd.contains(end) || end.equals(start)) end = locations.get(rand.nextInt(locations.size()));
-            forStart.add(start);
-            forEnd.add(end);
-            Car tempCar = new Car(start.getCenterX() - offset, start.getCenterY() - offset, offset + 10, j);
-            carVisitedLocations.put(tempCar, new ArrayList<>());
+            Location start = locations.get(engine.getStart(j));
+            Car tempCar = new Car(start.getCenterX() - offset, start.getCenterY() - offset, offset + 10, j, engine.getCars());
             cars.add(tempCar);
-            carStartLocation.put(tempCar, start);
-            carEndLocation.put(tempCar, end);
-            carCurrentLocation.put(tempCar, start);
             cars.get(j).setVisible(false);
-            carVisitedLocations.get(tempCar).add(start);
             this.getChildren().add(cars.get(j));
-        }
 
+            trails[j] = new Polyline(start.getCenterX(), start.getCenterY());
+            trails[j].setStroke(color[j % color.length]);
+            trailLayer.getChildren().add(trails[j]);
 
+            motion.setNode(j, tempCar);
+        }
     }
 
     /**
@@ -189,31 +263,26 @@ public class Track extends Group {
      */
     private void setGridPane(double sceneX, double sceneY) {
         gridPane = new GridPane();
-        gridPane.setMinSize(200, sceneY);
-        gridPane.setMaxSize(200, sceneY);
+        gridPane.setMinSize(290, sceneY);
+        gridPane.setMaxSize(290, sceneY);
         gridPane.setAlignment(Pos.CENTER);
-        gpLocations = new GridPane();
-        gpLocations.setMaxSize(200, sceneY / 3);
-        gpLocations.add(new Text("Location\t\tDistance (km)"), 0, 0);
-
-        for (int q = 0; q < locations.size(); q++) {
-            gpLocations.add(new Text((locations.get(q).getName()) + "\t\t"), 0, q + 1);
-            Text t = new Text(String.format("%.1f", carCurrentLocation.get(activeCar).getDistanceToLocation(locations.get(q))));
-            locationLabels.add(t);
-            gpLocations.add(t, 1, q + 1);
-        }
-
-        gpCars = new GridPane();
-        gpCars.setMaxSize(200, sceneY / 3);
-        gpCars.add(new Text("Car\t\tTime (hr)\t\tCurrent\t\tEnd"), 0, 0);
-
-        for (int j = 0; j < cars.size(); j++) {
-            Text t = new Text(cars.get(j).toString() + "\t\t\t"
-                    + carCurrentLocation.get(cars.get(j)).getName() + "\t"
-                    + carEndLocation.get(cars.get(j)).getName());//String.format("%.1f", cars.get(nums).getTime()));
-            carLabels.add(t);
-            gpCars.add(t, 0, j + 1);
-        }
+        for (Location location : locations) locationRows.add(new LocationRow(location.getName()));
+        locationTable = new TableView<>(FXCollections.observableArrayList(locationRows));
+        locationTable.getColumns().add(column("Location", 120, LocationRow::nameProperty));
+        locationTable.getColumns().add(column("Distance (km)", 120, LocationRow::distanceProperty));
+        locationTable.setPrefSize(290, sceneY / 3);
+
+        for (Car car : cars) carRows.add(new CarRow(car.getIdentifier()));
+        ends = new int[cars.size()];
+        for (Car car : cars) ends[car.getIdentifier()] = engine.getEnd(car.getIdentifier());
+        rankedRows = new CarRow[cars.size()];
+        carTable = new TableView<>(FXCollections.observableArrayList(carRows));
+        carTable.getColumns().add(column("Car", 35, CarRow::carProperty));
+        carTable.getColumns().add(column("Time (hr)", 60, CarRow::timeProperty));
+        carTable.getColumns().add(column("Proj. (hr)", 65, CarRow::projectedProperty));
+        carTable.getColumns().add(column("Current", 65, CarRow::currentProperty));
+        carTable.getColumns().add(column("End", 65, CarRow::endProperty));
+        carTable.setPrefSize(290, sceneY / 3);
 
         activeCarLabel = new Text("Active Car:\t" + (activeCar.getIdentifier() + 1));
         activeCarLabel.setFill(Color.DARKGREEN);
@@ -221,134 +290,301 @@ public class Track extends Group {
         activeCarBox = new Rectangle(activeCar.getWidth(), activeCar.getHeight());
         activeCarBox.setFill(activeCar.getFill());
 
-        gridPane.add(gpLocations, 0, 1);
-        gridPane.add(new Rectangle(200, 200, Color.TRANSPARENT), 0, 2);
-        gridPane.add(gpCars, 0, 3);
-        gridPane.add(new Rectangle(200, 200, Color.TRANSPARENT), 0, 4);
+        gridPane.add(locationTable, 0, 1);
+        gridPane.add(new Rectangle(200, 20, Color.TRANSPARENT), 0, 2);
+        gridPane.add(carTable, 0, 3);
+        gridPane.add(new Rectangle(200, 20, Color.TRANSPARENT), 0, 4);
         gridPane.add(activeCarLabel, 0, 5);
         gridPane.add(activeCarBox, 0, 6);
         gridPane.setLayoutX(sceneX - 300);
         this.getChildren().add(gridPane);
+        updateStats(new TurnDiff(engine, -1, -1, -1, changed, looks, 0));
     }
 
     /**
-     * Updates the cars statistics within the gridPane
+     * Creates a read-only text column for one of the stats tables.
+     *
+     * @param title The header of the column.
+     * @param width The preferred width of the column.
+     * @param value Gets the value of the column from a row.
+     * @return The column.
      */
-    public void updateStats() {
-        for (int i = 0; i < cars.size(); i++)
-            carLabels.get(i).setText(cars.get(i).toString() + "\t\t\t" + carCurrentLocation.get(cars.get(i)).getName()
-                    + "\t" + carEndLocation.get(cars.get(i)).getName());
-        for (int j = 0; j < locations.size(); j++)
-            locationLabels.get(j).setText(
-                    String.format("%.1f", carCurrentLocation.get(activeCar).getDistanceToLocation(locations.get(j))));
+    private static <S> TableColumn<S, String> column(String title, double width, Function<S, ReadOnlyStringProperty> value) {
+        TableColumn<S, String> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setSortable(false);
+        column.setCellValueFactory(cell -> value.apply(cell.getValue()));
+        return column;
+    }
+
+    /**
+     * Updates the cars statistics within the gridPane, with the cars in their current standings.
+     * Rows whose values are unchanged are left alone, and rows are only reordered when the standings change.
+     *
+     * @param diff The latest turn.
+     */
+    private void updateStats(TurnDiff diff) {
+        long start = System.nanoTime();
+        for (int i = 0; i < cars.size(); i++) {
+            int current = diff.getCurrent(i), end = ends[i];
+            carRows.get(i).update(diff.getTime(i), diff.getProjectedFinish(i), current,
+                    locations.get(current).getName(), end, locations.get(end).getName());
+        }
+        boolean reordered = false;
+        for (int k = 0; k < cars.size(); k++) {
+            CarRow row = carRows.get(diff.getStanding(k));
+            if (rankedRows[k] != row) {
+                rankedRows[k] = row;
+                reordered = true;
+            }
+        }
+        if (reordered) carTable.getItems().setAll(rankedRows);
+        int current = diff.getCurrent(activeCar.getIdentifier());
+        for (int j = 0; j < locations.size(); j++) locationRows.get(j).update(distances.get(current, j));
         activeCarLabel.setText("Active Car:\t" + (activeCar.getIdentifier() + 1));
         activeCarBox.setFill(activeCar.getFill());
+        Metrics.STATS.recordSince(start);
     }
 
     /**
-     * Animates the transition of the active car.
+     * Drives a car to its new location and extends its trail. Nothing is added per move.
      *
-     * @param x1 The current location x
-     * @param y1 The current location y
-     * @param x2 The destination location x
-     * @param y2 The destination location y
-     */
-    private void move(double x1, double y1, double x2, double y2) {
-        Path p = new Path();
-        p.getElements().add(new MoveTo(x1, y1));
-        p.getElements().add(new LineTo(x1, y1));
-        p.getElements().add(new LineTo(x2, y2));
-        p.setOpacity(0);
-        this.getChildren().add(p);
-        PathTransition pt = new PathTransition();
-        pt.setNode(activeCar);
-        pt.setDuration(Duration.seconds(.5));
-        pt.setDelay(Duration.seconds(0));
-        pt.setPath(p);
-        pt.setOrientation(PathTransition.OrientationType.ORTHOGONAL_TO_TANGENT);
-        pt.play();
+     * @param id   The car.
+     * @param from The location it left.
+     * @param to   The location it arrived at.
+     */
+    private void move(int id, Location from, Location to) {
+        long start = System.nanoTime();
+        cars.get(id).newLocation(to.getCenterX() - to.getRadius(), to.getCenterY() - to.getRadius());
+        trails[id].getPoints().addAll(to.getCenterX(), to.getCenterY());
+        motion.move(id, from.getCenterX() - to.getCenterX(), from.getCenterY() - to.getCenterY());
+        Metrics.ANIMATION.recordSince(start);
     }
 
     /**
-     * Handles changing the active car's location.
+     * @param scale How many times faster than normal cars drive, 1 for normal.
+     */
+    public void setAnimationSpeed(double scale) {
+        motion.setTimeScale(scale);
+    }
+
+    /**
+     * @param skip True to put cars at their new location straight away instead of driving them there.
+     */
+    public void setSkipAnimation(boolean skip) {
+        motion.setSkip(skip);
+    }
+
+    /**
+     * Handles a click on a location. Ignored while a computer controlled car has the turn.
+     * The turn is taken on the game-logic thread, and only if the car still has the turn by then.
      */
     private EventHandler<MouseEvent> locationEvent = mouseEvent -> {
-        Location l = (Location) mouseEvent.getSource();
-        if (!carVisitedLocations.get(activeCar).contains(l)) {
-            double x = carCurrentLocation.get(activeCar).getCenterX();
-            double y = carCurrentLocation.get(activeCar).getCenterY();
-            if (!carEndLocation.get(activeCar).equals(l) || carEndLocation.get(activeCar).isActive()) {
-                boolean carOneMoreLocation = carVisitedLocations.get(activeCar).size() + 1 == locations.size();
-                l.setClicked(true);
-                l.setActive(false, false);
-                double distance = carCurrentLocation.get(activeCar).getDistanceToLocation(l);
-                Location carLocation = carCurrentLocation.get(activeCar);
-                carCurrentLocation.put(activeCar, l); // updates activeCar current location
-                carVisitedLocations.get(activeCar).add(l); // updates visited locations
-
-                Location local = carCurrentLocation.get(activeCar);
-
-                Line line = new Line(carLocation.getCenterX(), carLocation.getCenterY(), local.getCenterX(), local.getCenterY());
-
-                Color[] color = {Color.RED, Color.BLUE, Color.BLACK, Color.YELLOW, Color.ORANGE};
-
-                line.setStroke(color[activeCar.getIdentifier() % color.length]);
-                this.getChildren().add(line);
-
-                activeCar.newLocation(l.getCenterX() - l.getRadius(), l.getCenterY() - l.getRadius(), distance);
-
-                move(x, y, l.getCenterX(), l.getCenterY());
-
-                activeCar = cars.get((cars.indexOf(activeCar) + 1) % cars.size());
-                updateStats();
-                carOneMoreLocation = carVisitedLocations.get(activeCar).size() + 1 >= locations.size();
-                for (Location location : locations) {
-                    if (carVisitedLocations.get(activeCar).contains(location))
-                        location.setActive(false, false);
-                    if (!carVisitedLocations.get(activeCar).contains(location))
-                        location.setActive(true, false);
-                    if (carEndLocation.get(activeCar).equals(location))
-                        carEndLocation.get(activeCar).setActive(false, true);
-                    if (carOneMoreLocation && carEndLocation.get(activeCar).equals(location)) {
-                        location.setActive(true, false);
-                        location.setLastColor();
-                    }
-                }
-                activeCar.setVisible(true);
+        int car = activeCar.getIdentifier();
+        if (logic.isBot(car) || !isLocal(car)) return;
+        submit(car, ((Location) mouseEvent.getSource()).getIdentifier(), System.nanoTime());
+    };
 
-            }
-        }
-        int finished = 0;
-        for (Car c : cars) if (carVisitedLocations.get(c).size() == locations.size()) finished++;
-        if (finished == cars.size()) {
+    /**
+     * Plays the race on a server. Moves chosen here are sent to it, and only made once it says so. Called
+     * after setTrack, with a race set up from the header the server sent, and before setBots.
+     *
+     * @param client The connection to the server.
+     * @param first  The first car driven from here.
+     * @param count  The number of cars driven from here.
+     */
+    public void setRemote(RaceClient client, int first, int count) {
+        this.client = client;
+        firstLocal = first;
+        numLocal = count;
+    }
 
-            for (Location local : locations) {
-                URL green = getClass().getResource("/main/resources/images/redgif.gif");
-                local.setFill(new ImagePattern(new Image(green.toString())));
-            }
+    /**
+     * A move the server made. Can be called from any thread, in the order the server made them.
+     *
+     * @param car      The car that moved.
+     * @param location Where it moved to.
+     */
+    public void moved(int car, int location) {
+        long start = System.nanoTime();
+        logic.later(() -> takeTurn(car, location, start));
+    }
 
-            Car car = cars.get(0);
+    /**
+     * @return True if the car is driven from here.
+     */
+    private boolean isLocal(int car) {
+        return client == null || (car >= firstLocal && car < firstLocal + numLocal);
+    }
 
-            for (Car aCar : cars) {
-                aCar.setVisible(true);
-                if (car.getTime() > aCar.getTime()) car = aCar;
+    /**
+     * Takes a turn chosen here, or asks the server to when the race is played on one. Either way it
+     * happens on the game-logic thread, as sending can block while the server is slow to read.
+     * A move that can't be sent is lost along with the connection, which the client reports.
+     */
+    private void submit(int car, int location, long start) {
+        if (client == null) {
+            logic.later(() -> takeTurn(car, location, start));
+            return;
+        }
+        logic.later(() -> {
+            try {
+                client.move(location);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        });
+    }
 
-            Text t = new Text("Car #" + car.getIdentifier() + "WINS!!");
+    /**
+     * Moves a car, if the engine allows it, and publishes what changed. Runs on the game-logic thread.
+     *
+     * @param car      The car that wants to move.
+     * @param location The location it wants to move to.
+     * @param start    When the turn was asked for, from System.nanoTime().
+     */
+    private void takeTurn(int car, int location, long start) {
+        if (stopped || engine.getActiveCar() != car) return;
+        int from = engine.getCurrent(car);
+        if (!engine.move(car, location)) return;
+        logic.drainLog();
+
+        // Only locations visited by exactly one of the two cars, and their ends, can look different.
+        int next = engine.getActiveCar(), count = 0;
+        for (int w = 0; w < engine.getWordCount(); w++) {
+            long bits = engine.getVisitedWord(car, w) ^ engine.getVisitedWord(next, w);
+            while (bits != 0) {
+                count = refresh(next, (w << 6) + Long.numberOfTrailingZeros(bits), count);
+                bits &= bits - 1;
+            }
+        }
+        count = refresh(next, location, count);
+        count = refresh(next, engine.getEnd(car), count);
+        count = refresh(next, engine.getEnd(next), count);
+        TurnDiff diff = new TurnDiff(engine, car, from, location, changed, looks, count);
+        if (engine.isOver()) logic.closeLog();
+        Metrics.turn(car, location, engine.getNumCars(), engine.getNumLocations(), start);
+        publisher.publish(diff);
+        logic.planBot();
+    }
 
-            t.setFont(Font.font(50));
-            t.setFill(Color.GREEN);
-            t.setEffect(new Glow());
-            t.setTextAlignment(TextAlignment.CENTER);
-            t.setTranslateY(100);
-            t.setTranslateX(200);
-            t.setTranslateZ(300);
+    /**
+     * Notes a location if it should look different to the car than it was last published to.
+     *
+     * @return The number of locations noted.
+     */
+    private int refresh(int car, int location, int count) {
+        byte look = TurnDiff.lookFor(engine, car, location);
+        if (shown[location] == look) return count;
+        shown[location] = look;
+        changed[count] = location;
+        looks[count] = look;
+        return count + 1;
+    }
 
-            this.getChildren().add(t);
+    /**
+     * Shows a batch of turns. Every car is moved and every location recolored, but the stats are
+     * only brought up to date once, for the last turn.
+     *
+     * @param batch The turns, in the order they were taken.
+     */
+    private void apply(List<TurnDiff> batch) {
+        if (stopped) return;
+        for (TurnDiff diff : batch) {
+            Location to = locations.get(diff.getTo());
+            to.setClicked(true);
+            move(diff.getCar(), locations.get(diff.getFrom()), to);
+            for (int k = 0; k < diff.getChangedCount(); k++) show(locations.get(diff.getChanged(k)), diff.getLook(k));
+        }
+        TurnDiff last = batch.get(batch.size() - 1);
+        activeCar = cars.get(last.getNext());
+        updateStats(last);
+        activeCar.setVisible(true);
+        if (last.getWinner() >= 0) endRace(last.getWinner());
+    }
 
-            car.setHeight(500);
-            car.setWidth(500);
+    /**
+     * Colors a location for how it looks to the car whose turn it is.
+     *
+     * @param location The location.
+     * @param look     How it looks, one of the looks of TurnDiff.
+     */
+    private static void show(Location location, byte look) {
+        switch (look) {
+            case TurnDiff.OPEN: location.setActive(true, false); break;
+            case TurnDiff.VISITED: location.setActive(false, false); break;
+            case TurnDiff.END: location.setActive(false, true); break;
+            default:
+                location.setActive(true, false);
+                location.setLastColor();
         }
-    };
+    }
+
+    /**
+     * Shows every location as finished and the winner.
+     *
+     * @param winner The car that won.
+     */
+    private void endRace(int winner) {
+        ImagePattern red = Assets.pattern("redgif.gif");
+        for (Location local : locations) local.setFill(red);
+
+        Car car = cars.get(winner);
+
+        for (Car aCar : cars) aCar.setVisible(true);
+
+        Text t = new Text("Car #" + car.getIdentifier() + "WINS!!");
+
+        t.setFont(Font.font(50));
+        t.setFill(Color.GREEN);
+        t.setEffect(new Glow());
+        t.setTextAlignment(TextAlignment.CENTER);
+        t.setTranslateY(100);
+        t.setTranslateX(200);
+        t.setTranslateZ(300);
+
+        this.getChildren().add(t);
+
+        car.setHeight(500);
+        car.setWidth(500);
+    }
+
+    /**
+     * Makes the last cars computer controlled, of those driven from here if the race is on a server.
+     * Called after setTrack and setRemote.
+     *
+     * @param numBots      The number of computer controlled cars.
+     * @param driver       Creates a driver for each computer controlled car.
+     * @param budgetMillis How long a computer controlled car may think about each turn.
+     */
+    public void setBots(int numBots, Supplier<Driver> driver, long budgetMillis) {
+        logic.setBots(numBots, client == null ? cars.size() : firstLocal + numLocal, driver, budgetMillis);
+    }
+
+    /**
+     * Records every turn from now on. Called after setTrack, before any turn is taken.
+     *
+     * @param file The file to record to, replaced if it exists.
+     * @throws IOException if the file can't be written.
+     */
+    public void record(Path file) throws IOException {
+        logic.record(file);
+    }
+
+    /**
+     * @return The seed the race was set up with.
+     */
+    public long getSeed() {
+        return header.getSeed();
+    }
+
+    /**
+     * Cancels any computer controlled turn in progress and finishes the log. Called when the track is left.
+     */
+    public void stop() {
+        stopped = true;
+        motion.stop();
+        logic.stop();
+    }
 
 }
@@ -0,0 +1,282 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Places the locations of a track so that no two are closer than a minimum spacing.
+ * Candidates are checked against a uniform grid whose cells are small enough to hold at most
+ * one location, so each check looks at a constant number of cells instead of every location.
+ * Points are first thrown uniformly at random; once the area gets crowded the remaining ones are
+ * grown from the placed ones with Bridson's Poisson-disk sampling.
+ * Also hands out the start and end location of each car, and can set up a whole race without a scene.
+ */
+public class TrackGenerator {
+
+    /**
+     * How many candidates are tried before giving up on a point.
+     */
+    private static final int ATTEMPTS = 30;
+
+    /**
+     * Random number generator. Seeding it makes the track reproducible.
+     */
+    private Random rand;
+
+    /**
+     * @param rand Random number generator.
+     */
+    public TrackGenerator(Random rand) {
+        this.rand = rand;
+    }
+
+    /**
+     * @param seed The seed of the random number generator.
+     */
+    public TrackGenerator(long seed) {
+        this(new Random(seed));
+    }
+
+    /**
+     * @param numPlayers The number of players.
+     * @return The number of locations on a track for that many players.
+     */
+    public static int locationsFor(int numPlayers) {
+        // for the number of players, number of locations changes, the addition of 2 or 3 extra locations is arbitrary
+        return (numPlayers & 1) == 1 ? numPlayers + 2 : numPlayers + 3;
+    }
+
+    /**
+     * Places the locations of a track on a scene. Locations are kept at least two radii apart and off the
+     * stats panel on the right, the spacing is relaxed only if the scene is too small to fit them.
+     *
+     * @param locationX Receives the x coordinate of each location. Its length is the number of locations.
+     * @param locationY Receives the y coordinate of each location.
+     * @param offset    Relative sizing.
+     * @param sceneX    Scene's width.
+     * @param sceneY    Scene's Height.
+     */
+    public void placeLocations(double[] locationX, double[] locationY, double offset, double sceneX, double sceneY) {
+        double spacing = offset * 2;
+        while (true) {
+            try {
+                generate(locationX, locationY, offset, offset, sceneX - offset - 300, sceneY - offset, spacing);
+                return;
+            } catch (IllegalStateException e) {
+                spacing *= 0.75; // Small screens can't fit every location apart, let them overlap a little.
+            }
+        }
+    }
+
+    /**
+     * Sets up a race the way Track does, without creating any nodes.
+     *
+     * @param numPlayers The number of cars.
+     * @param offset     Relative sizing.
+     * @param sceneX     Scene's width.
+     * @param sceneY     Scene's Height.
+     * @param statTotal  What each car's components add up to.
+     * @return The race, ready for the first turn.
+     */
+    public RaceEngine createRace(int numPlayers, double offset, double sceneX, double sceneY, int statTotal) {
+        int numLocation = locationsFor(numPlayers);
+        return createRace(numPlayers, new double[numLocation], new double[numLocation], offset, sceneX, sceneY, statTotal);
+    }
+
+    /**
+     * Sets up a race on a track with any number of locations. Everything is drawn from the random number
+     * generator in a fixed order, so the same seed and arguments always give the same race.
+     *
+     * @param numPlayers The number of cars.
+     * @param locationX  Receives the x coordinate of each location. Its length is the number of locations.
+     * @param locationY  Receives the y coordinate of each location.
+     * @param offset     Relative sizing.
+     * @param sceneX     Scene's width.
+     * @param sceneY     Scene's Height.
+     * @param statTotal  What each car's components add up to.
+     * @return The race, ready for the first turn.
+     */
+    public RaceEngine createRace(int numPlayers, double[] locationX, double[] locationY, double offset,
+                                 double sceneX, double sceneY, int statTotal) {
+        return createRace(numPlayers, locationX, locationY, null, null, offset, sceneX, sceneY, statTotal);
+    }
+
+    /**
+     * Sets up a race on a track with any number of locations, optionally on a road network. With roads,
+     * the locations are placed as usual, moved onto the nearest free junction and legs follow the
+     * shortest route between them. The roads are not drawn from the random number generator, so the
+     * locations, starts, ends and cars are the same with or without them.
+     *
+     * @param numPlayers The number of cars.
+     * @param locationX  Receives the x coordinate of each location. Its length is the number of locations.
+     * @param locationY  Receives the y coordinate of each location.
+     * @param roads      The roads to drive along, or null to drive in straight lines.
+     * @param junctions  Receives the junction each location is on, may be null if it's not needed.
+     * @param offset     Relative sizing.
+     * @param sceneX     Scene's width.
+     * @param sceneY     Scene's Height.
+     * @param statTotal  What each car's components add up to.
+     * @return The race, ready for the first turn.
+     */
+    public RaceEngine createRace(int numPlayers, double[] locationX, double[] locationY, RoadGraph roads,
+                                 int[] junctions, double offset, double sceneX, double sceneY, int statTotal) {
+        placeLocations(locationX, locationY, offset, sceneX, sceneY);
+        DistanceMatrix distances;
+        if (roads == null) distances = new DistanceMatrix(locationX, locationY);
+        else {
+            int[] snapped = roads.snap(locationX, locationY);
+            if (junctions != null) System.arraycopy(snapped, 0, junctions, 0, snapped.length);
+            distances = roads.distances(snapped);
+        }
+        RaceEngine engine = new RaceEngine(distances, numPlayers);
+        int[] starts = new int[numPlayers];
+        int[] ends = new int[numPlayers];
+        assignStartsAndEnds(locationX.length, starts, ends);
+        for (int j = 0; j < numPlayers; j++) engine.addCar(new CarStats(statTotal, rand), starts[j], ends[j]);
+        return engine;
+    }
+
+    /**
+     * Fills xs and ys with locations inside the given bounds.
+     *
+     * @param xs      Receives the x coordinate of each location. Its length is the number of locations.
+     * @param ys      Receives the y coordinate of each location.
+     * @param minX    The smallest x coordinate.
+     * @param minY    The smallest y coordinate.
+     * @param maxX    The largest x coordinate.
+     * @param maxY    The largest y coordinate.
+     * @param spacing The minimum distance between two locations.
+     * @throws IllegalStateException if the locations do not fit within the bounds.
+     */
+    public void generate(double[] xs, double[] ys, double minX, double minY, double maxX, double maxY, double spacing) {
+        int count = xs.length;
+        if (count == 0) return;
+        if (spacing <= 0 || maxX < minX || maxY < minY)
+            throw new IllegalArgumentException("Invalid bounds or spacing");
+        double cell = spacing / Math.sqrt(2);
+        int cols = (int) Math.ceil((maxX - minX) / cell) + 1;
+        int rows = (int) Math.ceil((maxY - minY) / cell) + 1;
+        if ((long) cols * rows > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Spacing is too small for the bounds");
+        int[] grid = new int[cols * rows];
+        Arrays.fill(grid, -1);
+        double minSq = spacing * spacing;
+
+        int placed = 0;
+        for (; placed < count; placed++) {
+            int attempt = 0;
+            for (; attempt < ATTEMPTS; attempt++) {
+                double x = minX + rand.nextDouble() * (maxX - minX);
+                double y = minY + rand.nextDouble() * (maxY - minY);
+                if (fits(x, y, xs, ys, grid, cols, rows, minX, minY, cell, minSq)) {
+                    place(placed, x, y, xs, ys, grid, cols, minX, minY, cell);
+                    break;
+                }
+            }
+            if (attempt == ATTEMPTS) break;
+        }
+        if (placed == count) return;
+
+        // Crowded: grow the rest outward from the placed locations.
+        int[] active = new int[count];
+        int numActive = 0;
+        for (int i = 0; i < placed; i++) active[numActive++] = i;
+        while (placed < count && numActive > 0) {
+            int pick = rand.nextInt(numActive);
+            int from = active[pick];
+            boolean found = false;
+            for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+                double angle = rand.nextDouble() * 2 * Math.PI;
+                double radius = spacing * (1 + rand.nextDouble());
+                double x = xs[from] + radius * Math.cos(angle);
+                double y = ys[from] + radius * Math.sin(angle);
+                if (x < minX || x > maxX || y < minY || y > maxY) continue;
+                if (fits(x, y, xs, ys, grid, cols, rows, minX, minY, cell, minSq)) {
+                    place(placed, x, y, xs, ys, grid, cols, minX, minY, cell);
+                    active[numActive++] = placed++;
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) active[pick] = active[--numActive];
+        }
+        if (placed < count)
+            throw new IllegalStateException("Only " + placed + " of " + count + " locations fit on the track");
+    }
+
+    /**
+     * @return True if no placed location is closer to (x, y) than the spacing.
+     */
+    private static boolean fits(double x, double y, double[] xs, double[] ys, int[] grid, int cols, int rows,
+                                double minX, double minY, double cell, double minSq) {
+        int cx = (int) ((x - minX) / cell);
+        int cy = (int) ((y - minY) / cell);
+        for (int gy = Math.max(0, cy - 2); gy <= Math.min(rows - 1, cy + 2); gy++) {
+            for (int gx = Math.max(0, cx - 2); gx <= Math.min(cols - 1, cx + 2); gx++) {
+                int other = grid[gy * cols + gx];
+                if (other < 0) continue;
+                double dx = xs[other] - x, dy = ys[other] - y;
+                if (dx * dx + dy * dy < minSq) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores a location and registers it in its grid cell.
+     */
+    private static void place(int index, double x, double y, double[] xs, double[] ys, int[] grid, int cols,
+                              double minX, double minY, double cell) {
+        xs[index] = x;
+        ys[index] = y;
+        grid[(int) ((y - minY) / cell) * cols + (int) ((x - minX) / cell)] = index;
+    }
+
+    /**
+     * Gives every car a start and an end location. No two cars share a start, no two cars share an end,
+     * and no car ends where it started. Runs in O(cars) no matter how many locations there are.
+     *
+     * @param numLocations The number of locations on the track.
+     * @param starts       Receives the start location of each car. Its length is the number of cars.
+     * @param ends         Receives the end location of each car.
+     * @throws IllegalArgumentException if there are not more locations than cars.
+     */
+    public void assignStartsAndEnds(int numLocations, int[] starts, int[] ends) {
+        int numCars = starts.length;
+        if (numLocations <= numCars)
+            throw new IllegalArgumentException(numCars + " cars need more than " + numLocations + " locations");
+        sample(numLocations, starts, numCars);
+        int[] drawn = new int[numCars + 1];
+        sample(numLocations, drawn, Math.min(numCars + 1, numLocations));
+        System.arraycopy(drawn, 0, ends, 0, numCars);
+        if (numCars == 1) {
+            if (ends[0] == starts[0]) ends[0] = drawn[1];
+            return;
+        }
+        // Swapping a conflicting end with any other car's end fixes both: ends are distinct, and so are starts.
+        for (int j = 0; j < numCars; j++) {
+            if (ends[j] != starts[j]) continue;
+            int k = (j + 1) % numCars;
+            ends[j] = ends[k];
+            ends[k] = starts[j];
+        }
+    }
+
+    /**
+     * Draws count distinct values from 0 to n - 1 with a partial Fisher-Yates shuffle.
+     * Only the slots that were swapped are remembered, so the whole range is never materialized.
+     */
+    private void sample(int n, int[] out, int count) {
+        Map<Integer, Integer> swapped = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int j = i + rand.nextInt(n - i);
+            Integer atJ = swapped.get(j);
+            Integer atI = swapped.get(i);
+            out[i] = atJ != null ? atJ : j;
+            swapped.put(j, atI != null ? atI : i);
+        }
+    }
+
+}
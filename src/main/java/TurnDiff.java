@@ -0,0 +1,159 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * What one turn changed, as the game-logic thread publishes it for the screen: the move, how the
+ * locations that look different for the car taking the next turn should look now, and a copy of every
+ * car's stats. Never changes once made, so it can be read on any thread.
+ */
+public final class TurnDiff {
+
+    /**
+     * How a location looks to the car whose turn it is.
+     */
+    public static final byte OPEN = 0, VISITED = 1, END = 2, LAST = 3;
+
+    /**
+     * The car that moved, where from and where to, and the car whose turn it is now. car is -1 when nothing moved.
+     */
+    private final int car, from, to, next;
+
+    /**
+     * The locations that look different than before, and how each looks now.
+     */
+    private final int[] locations;
+    private final byte[] looks;
+
+    /**
+     * Every car's time, projected finish and current location.
+     */
+    private final double[] times, projected;
+    private final int[] currents;
+
+    /**
+     * The cars from first to last by projected finish.
+     */
+    private final int[] standings;
+
+    /**
+     * The winner once the race is over, otherwise -1.
+     */
+    private final int winner;
+
+    /**
+     * Copies the changed locations, and the stats of every car from a race.
+     *
+     * @param engine    The race, after the move.
+     * @param car       The car that moved, -1 if none did.
+     * @param from      Where it moved from.
+     * @param to        Where it moved to.
+     * @param locations The locations that look different than before.
+     * @param looks     How each of them looks now.
+     * @param count     How many of them there are.
+     */
+    public TurnDiff(RaceEngine engine, int car, int from, int to, int[] locations, byte[] looks, int count) {
+        this.car = car;
+        this.from = from;
+        this.to = to;
+        this.next = engine.getActiveCar();
+        this.locations = Arrays.copyOf(locations, count);
+        this.looks = Arrays.copyOf(looks, count);
+        int numCars = engine.getNumCars();
+        times = new double[numCars];
+        projected = new double[numCars];
+        currents = new int[numCars];
+        for (int c = 0; c < numCars; c++) {
+            times[c] = engine.getTime(c);
+            projected[c] = engine.getProjectedFinish(c);
+            currents[c] = engine.getCurrent(c);
+        }
+        standings = new int[numCars];
+        engine.getLeaderboard().getStandings(standings);
+        winner = engine.isOver() ? engine.getWinner() : -1;
+    }
+
+    /**
+     * @param engine   The race.
+     * @param car      The car whose turn it is.
+     * @param location The location.
+     * @return How the location looks to the car.
+     */
+    public static byte lookFor(RaceEngine engine, int car, int location) {
+        if (engine.isVisited(car, location)) return VISITED;
+        if (engine.getEnd(car) == location) return engine.isEndAvailable(car) ? LAST : END;
+        return OPEN;
+    }
+
+    /**
+     * @return The car that moved, -1 if none did.
+     */
+    public int getCar() { return car; }
+
+    /**
+     * @return Where the car moved from.
+     */
+    public int getFrom() { return from; }
+
+    /**
+     * @return Where the car moved to.
+     */
+    public int getTo() { return to; }
+
+    /**
+     * @return The car whose turn it is now.
+     */
+    public int getNext() { return next; }
+
+    /**
+     * @return The number of locations that look different than before.
+     */
+    public int getChangedCount() { return locations.length; }
+
+    /**
+     * @param k Which of them, from 0 to getChangedCount() - 1.
+     * @return The location.
+     */
+    public int getChanged(int k) { return locations[k]; }
+
+    /**
+     * @param k Which of them, from 0 to getChangedCount() - 1.
+     * @return How it looks now.
+     */
+    public byte getLook(int k) { return looks[k]; }
+
+    /**
+     * @return The number of cars.
+     */
+    public int getNumCars() { return times.length; }
+
+    /**
+     * @param car The car.
+     * @return Its time so far.
+     */
+    public double getTime(int car) { return times[car]; }
+
+    /**
+     * @param car The car.
+     * @return Its projected finishing time.
+     */
+    public double getProjectedFinish(int car) { return projected[car]; }
+
+    /**
+     * @param car The car.
+     * @return Where it is.
+     */
+    public int getCurrent(int car) { return currents[car]; }
+
+    /**
+     * @param rank The place, 0 for first.
+     * @return The car in that place.
+     */
+    public int getStanding(int rank) { return standings[rank]; }
+
+    /**
+     * @return The winner once the race is over, otherwise -1.
+     */
+    public int getWinner() { return winner; }
+
+}
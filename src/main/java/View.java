@@ -1,23 +1,44 @@
 package main.java;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * TODO: Create and display directions.
  * TODO: Align the restart button.
@@ -39,6 +60,16 @@ public class View extends Application {
      */
     private Track track;
 
+    /**
+     * The main screen for the game when it is drawn onto canvases, for big tracks.
+     */
+    private CanvasTrack canvasTrack;
+
+    /**
+     * Where every race is recorded, one log per race named after its seed.
+     */
+    private static final Path REPLAYS = Paths.get("replays");
+
     /**
      * Global reference to the restart button for the restart event-handler.
      */
@@ -48,10 +79,31 @@ public class View extends Application {
      * Global reference to the start-prompt for the restart event-handler.
      */
     private StartPrompt prompt;
+
+    /**
+     * Times the frames for Metrics.FRAME, shown over JMX with the other metrics.
+     */
+    private FrameMonitor frameMonitor;
+
+    /**
+     * The connection to the server the race is played on, null when it is played here.
+     */
+    private RaceClient client;
+
+    /**
+     * The server started in this program for playing through one, started the first time it is needed.
+     */
+    private RaceServer loopback;
+
     /**
      * Handles restarting the game. Re-initiates the start prompt and sets it to the screen's root.
      */
     private EventHandler<MouseEvent> restart = mouseEvent -> {
+        if (track != null) track.stop();
+        if (canvasTrack != null) canvasTrack.stop();
+        disconnect();
+        track = null;
+        canvasTrack = null;
         prompt = new StartPrompt();
         scene.setRoot(prompt);
     };
@@ -74,6 +126,10 @@ public class View extends Application {
      */
     @Override
     public void start(final Stage stage) throws Exception {
+        Assets.preload();
+        Metrics.register();
+        frameMonitor = new FrameMonitor(Metrics.FRAME);
+        frameMonitor.start();
         prompt = new StartPrompt();
         Rectangle2D primaryScreenBounds = Screen.getPrimary().getVisualBounds();
         scene = new Scene(prompt, primaryScreenBounds.getWidth(), primaryScreenBounds.getHeight(), Color.WHITE);
@@ -82,6 +138,140 @@ public class View extends Application {
         stage.show();
     }
 
+    /**
+     * Leaves the track, finishing its log, and writes the metrics out, if asked to with
+     * -Dracegame.metrics=&lt;file&gt;.
+     */
+    @Override
+    public void stop() throws IOException {
+        if (track != null) track.stop();
+        if (canvasTrack != null) canvasTrack.stop();
+        if (frameMonitor != null) frameMonitor.stop();
+        disconnect();
+        if (loopback != null) loopback.close();
+        Metrics.dumpOnExit();
+    }
+
+    /**
+     * Closes the connection to the server, if there is one.
+     */
+    private void disconnect() {
+        if (client == null) return;
+        try {
+            client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        client = null;
+    }
+
+    /**
+     * Follows a race played on a server: sets the track up once the server says which cars are driven
+     * from here, and passes every move on to it. Moves that come before the track is set up are held.
+     */
+    private class RemoteRace implements RaceClient.Listener {
+
+        /**
+         * How many of the cars driven from here are computer controlled, and how they drive.
+         */
+        private final int bots;
+        private final Supplier<Driver> drivers;
+
+        /**
+         * The track, null until it is set up.
+         */
+        private Track remoteTrack;
+
+        /**
+         * The moves that came before the track was set up, car and location.
+         */
+        private final List<int[]> early = new ArrayList<>();
+
+        /**
+         * @param bots    How many of the cars driven from here are computer controlled.
+         * @param drivers Creates a driver for each computer controlled car.
+         */
+        RemoteRace(int bots, Supplier<Driver> drivers) {
+            this.bots = bots;
+            this.drivers = drivers;
+        }
+
+        @Override
+        public void joined(int race, int first, int cars, ReplayLog.Header header) {
+            Platform.runLater(() -> {
+                if (client == null) return; // Left before the server answered.
+                track = new Track();
+                track.setTrack(header);
+                track.setRemote(client, first, cars);
+                try {
+                    Files.createDirectories(REPLAYS);
+                    track.record(REPLAYS.resolve("race-" + header.getSeed() + ".rpl"));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                track.setBots(bots, drivers, 250);
+                prompt.show(track);
+                Text label = new Text(100, 20, "Race " + race + ", cars " + (first + 1) + " to " + (first + cars));
+                label.setFill(Color.DARKGREEN);
+                track.getChildren().add(label);
+                synchronized (this) {
+                    remoteTrack = track;
+                    for (int[] move : early) remoteTrack.moved(move[0], move[1]);
+                    early.clear();
+                }
+            });
+        }
+
+        @Override
+        public synchronized void moved(int car, int location) {
+            if (remoteTrack == null) early.add(new int[]{car, location});
+            else remoteTrack.moved(car, location);
+        }
+
+        @Override
+        public void rejected(int location) {
+            // The click simply doesn't count.
+        }
+
+        @Override
+        public void error(int code) {
+            System.err.println("The server refused: error " + code);
+            Platform.runLater(() -> {
+                if (track != null) return;
+                prompt.enable();
+                prompt.showMessage("The server refused: error " + code);
+            });
+        }
+
+        @Override
+        public void closed(IOException cause) {
+            if (cause == null) return; // Closed from here.
+            cause.printStackTrace();
+            Platform.runLater(() -> lost(cause));
+        }
+
+        /**
+         * Leaves the race after losing the server, unless another one has been started since, and says why
+         * on the start prompt.
+         */
+        private void lost(IOException cause) {
+            Track shown;
+            synchronized (this) {
+                shown = remoteTrack;
+            }
+            if (shown == null ? track != null || canvasTrack != null : track != shown) return;
+            if (shown != null) {
+                shown.stop();
+                track = null;
+                prompt = new StartPrompt();
+                scene.setRoot(prompt);
+            }
+            disconnect();
+            prompt.enable();
+            prompt.showMessage("Lost the connection to the server: " + cause.getMessage());
+        }
+    }
+
     /**
      * Creates a prompt to allow users to choose how many players will be playing the game. Separated for clarity.
      */
@@ -92,28 +282,275 @@ public class View extends Application {
          */
         private ComboBox<Integer> comboBox;
 
+        /**
+         * How many of the players are computer controlled.
+         */
+        private ComboBox<Integer> botBox;
+
+        /**
+         * How the computer controlled players drive.
+         */
+        private ComboBox<String> driverBox;
+
+        /**
+         * Whether the track is made of nodes or drawn onto canvases.
+         */
+        private ComboBox<String> rendererBox;
+
+        /**
+         * How many locations a canvas track has.
+         */
+        private ComboBox<String> locationBox;
+
+        /**
+         * How many nodes the roads of a canvas track have, or none to drive in straight lines.
+         */
+        private ComboBox<String> roadBox;
+
+        /**
+         * The seed of the race, left empty for a random one.
+         */
+        private TextField seedField;
+
+        /**
+         * Where the race is played: here, on a server started for it, or on a server elsewhere.
+         */
+        private ComboBox<String> serverBox;
+
+        /**
+         * The server elsewhere, as host:port, or host:port/race to join a race on it.
+         */
+        private TextField serverField;
+
         /**
          * The start button. Separated for access by it's event handler.
          */
         private Button button;
+
+        /**
+         * Opens a recorded race instead of starting one.
+         */
+        private Button replayButton;
+
+        /**
+         * Says what went wrong with the last race, empty until something does.
+         */
+        private Label message;
+
         /**
          * Handles the start button
-         * When the start button is clicked a new Track is created.
-         * The value of the selection of the combo box is passed to the Track's setTrack method.
-         * Then sets Scene's root to the track.
+         * When the start button is clicked a new Track, or a CanvasTrack if the canvas renderer is selected, is created.
+         * The value of the selection of the combo box is passed to the track's setTrack method.
+         * Then sets Scene's root to the track. A CanvasTrack's race is set up in the background first.
          * Creates a restart button, adds it to the track and adds an event handler for it.
          */
         private EventHandler<MouseEvent> event = mouseEvent -> {
-            track = new Track();
             comboBox.setDisable(true);
             button.setDisable(true);
             int i = comboBox.getValue() != null ? comboBox.getValue() : 2;
-            track.setTrack(i, 64, scene.getWidth(), scene.getHeight());
-            scene.setRoot(track);
+            int bots = botBox.getValue() != null ? botBox.getValue() : 0;
+            String driver = driverBox.getValue() != null ? driverBox.getValue() : "Greedy";
+            Supplier<Driver> drivers = () -> {
+                switch (driver) {
+                    case "Local search": return new LocalSearchDriver();
+                    case "Monte Carlo": return new MonteCarloDriver();
+                    default: return new GreedyDriver();
+                }
+            };
+            long seed;
+            try {
+                seed = Long.parseLong(seedField.getText().trim());
+            } catch (NumberFormatException e) {
+                seed = new Random().nextLong();
+            }
+            String server = serverBox.getValue() != null ? serverBox.getValue() : "Here";
+            if (!"Here".equals(server)) {
+                connect("Loopback server".equals(server), i, bots, drivers, seed);
+                return;
+            }
+            Path log = REPLAYS.resolve("race-" + seed + ".rpl");
+            if ("Canvas".equals(rendererBox.getValue())) {
+                int locations = TrackGenerator.locationsFor(i);
+                if (locationBox.getValue() != null && !"Standard".equals(locationBox.getValue()))
+                    locations = Math.max(locations, Integer.parseInt(locationBox.getValue()));
+                int roadNodes = 0;
+                if (roadBox.getValue() != null && !"None".equals(roadBox.getValue())) {
+                    roadNodes = Integer.parseInt(roadBox.getValue());
+                    locations = Math.min(locations, RoadGraph.MAX_LOCATIONS);
+                }
+                startCanvas(i, locations, roadNodes, seed, bots, drivers, log);
+                return;
+            }
+            track = new Track();
+            track.setTrack(i, 64, scene.getWidth(), scene.getHeight(), seed);
+            try {
+                Files.createDirectories(REPLAYS);
+                track.record(log);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            track.setBots(bots, drivers, 250);
+            if (bots >= i) track.setAnimationSpeed(2); // Keep up with a bot taking a turn every 250 ms.
+            show(track);
+        };
+
+        /**
+         * Sets a race up for a CanvasTrack in the background, as roads take seconds to contract and route,
+         * and shows it once it is ready. The prompt stays up, with its buttons disabled, until then.
+         *
+         * @param players   The number of cars.
+         * @param locations The number of locations.
+         * @param roadNodes About how many nodes the roads have, 0 to drive in straight lines.
+         * @param seed      The seed of the race.
+         * @param bots      How many of the cars are computer controlled.
+         * @param drivers   Creates a driver for each computer controlled car.
+         * @param log       The file to record the race to.
+         */
+        private void startCanvas(int players, int locations, int roadNodes, long seed, int bots,
+                                 Supplier<Driver> drivers, Path log) {
+            double sceneX = scene.getWidth(), sceneY = scene.getHeight();
+            inBackground(() -> new CanvasTrack.Setup(players, locations, 64, sceneX, sceneY, seed, roadNodes), ready -> {
+                canvasTrack = new CanvasTrack();
+                canvasTrack.setTrack(ready);
+                try {
+                    Files.createDirectories(REPLAYS);
+                    canvasTrack.record(log);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                canvasTrack.setBots(bots, drivers, 250);
+                show(canvasTrack);
+            });
+        }
+
+        /**
+         * Connects to a server and asks it to set a race up, or to join one. The track is shown once it
+         * answers. A race set up on the loopback server is driven entirely from here, one on a server
+         * elsewhere gets a car driven from here plus the computer controlled ones.
+         *
+         * @param local   True to play on the loopback server, false for the one in the server field.
+         * @param players The number of cars.
+         * @param bots    How many of the cars driven from here are computer controlled.
+         * @param drivers Creates a driver for each computer controlled car.
+         * @param seed    The seed of the race.
+         */
+        private void connect(boolean local, int players, int bots, Supplier<Driver> drivers, long seed) {
+            try {
+                InetSocketAddress address;
+                int race = -1;
+                if (local) {
+                    InetAddress host = InetAddress.getLoopbackAddress();
+                    if (loopback == null) loopback = new RaceServer(new InetSocketAddress(host, 0), 2);
+                    address = new InetSocketAddress(host, loopback.getPort());
+                } else {
+                    String text = serverField.getText().trim();
+                    int slash = text.indexOf('/');
+                    if (slash >= 0) {
+                        race = Integer.parseInt(text.substring(slash + 1));
+                        text = text.substring(0, slash);
+                    }
+                    int colon = text.lastIndexOf(':');
+                    address = colon < 0 ? new InetSocketAddress(text, RaceServer.DEFAULT_PORT)
+                            : new InetSocketAddress(text.substring(0, colon), Integer.parseInt(text.substring(colon + 1)));
+                }
+                client = new RaceClient(address, new RemoteRace(bots, drivers));
+                int cars = local ? players : 1 + bots;
+                if (race >= 0) client.join(race, cars);
+                else client.create(new ReplayLog.Header(seed, Tournament.STAT_TOTAL, players,
+                        TrackGenerator.locationsFor(players), 64, scene.getWidth(), scene.getHeight()), cars);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                disconnect();
+                enable();
+            }
+        }
+
+        /**
+         * Shows what went wrong under the buttons.
+         *
+         * @param text What went wrong.
+         */
+        private void showMessage(String text) {
+            message.setText(text);
+        }
+
+        /**
+         * Lets the start button be used again.
+         */
+        private void enable() {
+            comboBox.setDisable(false);
+            button.setDisable(false);
+            replayButton.setDisable(false);
+        }
+
+        /**
+         * Handles the replay button. Asks for a recorded race, indexes it and sets it up in the background,
+         * then shows it on a CanvasTrack.
+         */
+        private EventHandler<MouseEvent> replayEvent = mouseEvent -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Watch Replay");
+            if (Files.isDirectory(REPLAYS)) chooser.setInitialDirectory(REPLAYS.toFile());
+            File file = chooser.showOpenDialog(scene.getWindow());
+            if (file == null) return;
+            comboBox.setDisable(true);
+            button.setDisable(true);
+            ReplayIndex[] index = new ReplayIndex[1];
+            inBackground(() -> {
+                ReplayReader reader = new ReplayReader(file.toPath());
+                CanvasTrack.Setup setup;
+                try {
+                    setup = new CanvasTrack.Setup(reader.getHeader());
+                } catch (RuntimeException e) {
+                    reader.close();
+                    throw e;
+                }
+                // The index plays the log on a copy of the race, so the roads are only made once.
+                index[0] = new ReplayIndex(reader, setup.getEngine());
+                return setup;
+            }, setup -> {
+                canvasTrack = new CanvasTrack();
+                canvasTrack.setReplay(index[0], setup);
+                show(canvasTrack);
+            });
+        };
+
+        /**
+         * Does slow work on a thread of its own in a Task, keeping the window responsive, and hands the
+         * result over on the JavaFX application thread. If the work fails the buttons can be used again.
+         *
+         * @param work Does the work.
+         * @param done Receives the result.
+         */
+        private <T> void inBackground(Callable<T> work, Consumer<T> done) {
+            replayButton.setDisable(true);
+            Task<T> task = new Task<T>() {
+                @Override
+                protected T call() throws Exception {
+                    return work.call();
+                }
+            };
+            task.setOnSucceeded(e -> done.accept(task.getValue()));
+            task.setOnFailed(e -> {
+                task.getException().printStackTrace();
+                enable();
+            });
+            Thread thread = new Thread(task, "track-setup");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Sets Scene's root to a track and adds the restart button to it.
+         *
+         * @param root The track.
+         */
+        private void show(Group root) {
+            scene.setRoot(root);
             restartButton = new Button("Restart");
             restartButton.setOnMouseClicked(restart);
-            track.getChildren().add(restartButton);
-        };
+            root.getChildren().add(restartButton);
+        }
 
         /**
          * Initializes the a title, a start button, and a ComboBox for the players to choose the amount of players.
@@ -128,12 +565,22 @@ public class View extends Application {
             button.setStyle("-fx-background-color: black; -fx-text-fill: #fff");
             button.setOnMouseClicked(event);
 
+            replayButton = new Button("Watch Replay");
+            replayButton.setStyle("-fx-background-color: black; -fx-text-fill: #fff");
+            replayButton.setOnMouseClicked(replayEvent);
+            HBox buttons = new HBox(20, button, replayButton);
+            buttons.setAlignment(Pos.CENTER);
+            message = new Label();
+            message.setStyle("-fx-text-fill: #ff6b6b");
+            VBox bottom = new VBox(10, buttons, message);
+            bottom.setAlignment(Pos.CENTER);
+
             GridPane gp = addGridPane();
 
             this.setTop(new StackPane(text));
             this.getTop().setTranslateY(100);
             this.setCenter(gp);
-            this.setBottom(new StackPane(button));
+            this.setBottom(bottom);
             this.getBottom().setTranslateY(-100);
             this.setStyle("-fx-background-color: #2c2c2c;");
         }
@@ -141,7 +588,7 @@ public class View extends Application {
         /**
          * Creates a grid for layout purposes.
          *
-         * @return gp a grid-pane with a label and a combo-box
+         * @return gp a grid-pane with labels and combo-boxes
          */
         private GridPane addGridPane() {
             Label players = new Label("Number of Players\t");
@@ -153,11 +600,93 @@ public class View extends Application {
             comboBox.setValue(2);
             comboBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
 
+            Label computers = new Label("Computer Players\t");
+            computers.setStyle("-fx-text-fill: #fff");
+
+            botBox = new ComboBox<Integer>();
+            for (int b = 0; b <= 15; b++) botBox.getItems().add(b);
+            botBox.setEditable(false);
+            botBox.setValue(0);
+            botBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label driving = new Label("Computer Driver\t");
+            driving.setStyle("-fx-text-fill: #fff");
+
+            driverBox = new ComboBox<String>();
+            driverBox.getItems().addAll("Greedy", "Local search", "Monte Carlo");
+            driverBox.setEditable(false);
+            driverBox.setValue("Greedy");
+            driverBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label rendering = new Label("Renderer\t");
+            rendering.setStyle("-fx-text-fill: #fff");
+
+            rendererBox = new ComboBox<String>();
+            rendererBox.getItems().addAll("Nodes", "Canvas");
+            rendererBox.setEditable(false);
+            rendererBox.setValue("Nodes");
+            rendererBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label places = new Label("Locations (canvas)\t");
+            places.setStyle("-fx-text-fill: #fff");
+
+            locationBox = new ComboBox<String>();
+            locationBox.getItems().addAll("Standard", "100", "1000", "5000");
+            locationBox.setEditable(false);
+            locationBox.setValue("Standard");
+            locationBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label roading = new Label("Road nodes (canvas)\t");
+            roading.setStyle("-fx-text-fill: #fff");
+
+            roadBox = new ComboBox<String>();
+            roadBox.getItems().addAll("None", "10000", "50000", "200000");
+            roadBox.setEditable(false);
+            roadBox.setValue("None");
+            roadBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label seeding = new Label("Seed (blank for random)\t");
+            seeding.setStyle("-fx-text-fill: #fff");
+
+            seedField = new TextField();
+            seedField.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label serving = new Label("Play on\t");
+            serving.setStyle("-fx-text-fill: #fff");
+
+            serverBox = new ComboBox<String>();
+            serverBox.getItems().addAll("Here", "Loopback server", "Remote server");
+            serverBox.setEditable(false);
+            serverBox.setValue("Here");
+            serverBox.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
+            Label address = new Label("Server (host:port[/race])\t");
+            address.setStyle("-fx-text-fill: #fff");
+
+            serverField = new TextField("localhost:" + RaceServer.DEFAULT_PORT);
+            serverField.setStyle("-fx-text-fill: #111111; -fx-border-color: #fff;");
+
             GridPane gp = new GridPane();
 
             gp.setAlignment(Pos.CENTER);
             gp.add(players, 0, 0);
             gp.add(comboBox, 1, 0);
+            gp.add(computers, 0, 1);
+            gp.add(botBox, 1, 1);
+            gp.add(driving, 0, 2);
+            gp.add(driverBox, 1, 2);
+            gp.add(rendering, 0, 3);
+            gp.add(rendererBox, 1, 3);
+            gp.add(places, 0, 4);
+            gp.add(locationBox, 1, 4);
+            gp.add(roading, 0, 5);
+            gp.add(roadBox, 1, 5);
+            gp.add(seeding, 0, 6);
+            gp.add(seedField, 1, 6);
+            gp.add(serving, 0, 7);
+            gp.add(serverBox, 1, 7);
+            gp.add(address, 0, 8);
+            gp.add(serverField, 1, 8);
 
             return gp;
         }
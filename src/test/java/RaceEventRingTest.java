@@ -0,0 +1,110 @@
+package main.java;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that spectators of a RaceEventRing read whole events in order, however many there are and
+ * however slowly they read, and that what they miss is counted.
+ */
+public class RaceEventRingTest {
+
+    /**
+     * Events published while the spectators read.
+     */
+    private static final int EVENTS = 3_000_000;
+
+    /**
+     * Spectators reading at once.
+     */
+    private static final int SUBSCRIBERS = 200;
+
+    /**
+     * Every spectator reads events in order, none of them torn, and reads or drops each one exactly once.
+     * Three in four spectators pause now and then, so they fall behind and drop events.
+     */
+    @Test(timeout = 120_000)
+    public void subscribersReadWholeEventsInOrder() throws InterruptedException {
+        RaceEventRing ring = new RaceEventRing(RaceEventRing.DEFAULT_SIZE);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong torn = new AtomicLong(), read = new AtomicLong(), dropped = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < SUBSCRIBERS; s++) {
+            int pause = s % 4;
+            RaceEventRing.Subscriber subscriber = ring.subscribe();
+            Thread thread = new Thread(() -> {
+                RaceEvent event = new RaceEvent();
+                long last = -1, count = 0;
+                while (!done.get() || subscriber.getBacklog() > 0) {
+                    if (!subscriber.poll(event)) {
+                        Thread.yield();
+                        continue;
+                    }
+                    count++;
+                    if (event.getSequence() <= last || !matches(event)) torn.incrementAndGet();
+                    last = event.getSequence();
+                    if (pause > 0 && (count & 1023) == 0) LockSupport.parkNanos(pause * 100_000L);
+                }
+                read.addAndGet(count);
+                dropped.addAndGet(subscriber.getDropped());
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        for (int i = 0; i < EVENTS; i++) publish(ring, i);
+        done.set(true);
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, torn.get());
+        assertEquals((long) SUBSCRIBERS * EVENTS, read.get() + dropped.get());
+        assertEquals(EVENTS, ring.getPublished());
+    }
+
+    /**
+     * A spectator a whole ring behind carries on from the oldest event still there and counts the rest as dropped.
+     */
+    @Test
+    public void fallingBehindDropsTheOldest() {
+        RaceEventRing ring = new RaceEventRing(16);
+        RaceEventRing.Subscriber subscriber = ring.subscribe();
+        for (int i = 0; i < 26; i++) publish(ring, i);
+        assertEquals(16, subscriber.getBacklog());
+        RaceEvent event = new RaceEvent();
+        for (int i = 10; i < 26; i++) {
+            assertTrue(subscriber.poll(event));
+            assertEquals(i, event.getSequence());
+            assertTrue(matches(event));
+        }
+        assertFalse(subscriber.poll(event));
+        assertEquals(10, subscriber.getDropped());
+    }
+
+    /**
+     * Publishes an event whose every field is worked out from its sequence.
+     */
+    private static void publish(RaceEventRing ring, int sequence) {
+        ring.publish(RaceEvent.MOVED, sequence & 15, sequence >>> 4, sequence ^ 0x5555, sequence * 0.5, sequence * 2.0,
+                sequence & 1023);
+    }
+
+    /**
+     * @return True if every field of an event is what publish wrote for its sequence.
+     */
+    private static boolean matches(RaceEvent event) {
+        int sequence = (int) event.getSequence();
+        return event.getType() == RaceEvent.MOVED && event.getCar() == (sequence & 15)
+                && event.getFrom() == sequence >>> 4 && event.getLocation() == (sequence ^ 0x5555)
+                && event.getLegTime() == sequence * 0.5 && event.getTime() == sequence * 2.0
+                && event.getVisitedCount() == (sequence & 1023);
+    }
+
+}
@@ -0,0 +1,140 @@
+package main.java;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks routing on a contraction hierarchy against a plain Dijkstra search on the same roads.
+ */
+public class RoadRouterTest {
+
+    /**
+     * The roads every test routes on.
+     */
+    private static RoadGraph roads;
+
+    /**
+     * Lays out a city of about 20000 nodes and contracts it.
+     */
+    @BeforeClass
+    public static void setUp() {
+        roads = RoadGraph.generate(new Random(1), 20000, 64, 64, 1920 - 364, 1080 - 64);
+        roads.getHierarchy();
+    }
+
+    /**
+     * The length of the shortest route is the same as Dijkstra finds, for random pairs of junctions.
+     */
+    @Test
+    public void distancesMatchDijkstra() {
+        RoadRouter router = new RoadRouter(roads.getHierarchy());
+        Random rand = new Random(2);
+        for (int s = 0; s < 5; s++) {
+            int from = rand.nextInt(roads.size());
+            double[] expected = dijkstra(from);
+            for (int k = 0; k < 200; k++) {
+                int to = rand.nextInt(roads.size());
+                assertEquals(from + " -> " + to, expected[to], router.distance(from, to), 1e-9 * Math.max(1, expected[to]));
+            }
+        }
+    }
+
+    /**
+     * A route runs along roads from one end to the other, and is exactly as long as the distance.
+     */
+    @Test
+    public void routesFollowRoads() {
+        RoadRouter router = new RoadRouter(roads.getHierarchy());
+        Random rand = new Random(3);
+        for (int k = 0; k < 500; k++) {
+            int from = rand.nextInt(roads.size()), to = rand.nextInt(roads.size());
+            int[] route = router.route(from, to);
+            assertEquals(from, route[0]);
+            assertEquals(to, route[route.length - 1]);
+            double length = 0;
+            for (int i = 1; i < route.length; i++) {
+                double road = road(route[i - 1], route[i]);
+                assertTrue(route[i - 1] + " and " + route[i] + " are not joined by a road", road >= 0);
+                length += road;
+            }
+            double distance = router.distance(from, to);
+            assertEquals(distance, length, 1e-9 * Math.max(1, distance));
+        }
+    }
+
+    /**
+     * The distances between locations snapped onto the roads are symmetric and the same as Dijkstra finds.
+     */
+    @Test
+    public void distanceMatrixMatchesDijkstra() {
+        int count = 100;
+        double[] x = new double[count], y = new double[count];
+        new TrackGenerator(5).placeLocations(x, y, 20, 1920, 1080);
+        int[] nodes = roads.snap(x, y);
+        DistanceMatrix matrix = roads.distances(nodes);
+        for (int i = 0; i < count; i++) {
+            double[] expected = dijkstra(nodes[i]);
+            for (int j = 0; j < count; j++) {
+                assertEquals(matrix.get(j, i), matrix.get(i, j), 0);
+                assertEquals(expected[nodes[j]], matrix.get(i, j), 1e-9 * Math.max(1, expected[nodes[j]]));
+            }
+        }
+    }
+
+    /**
+     * Snapping puts every location on a junction of its own, and moves it there.
+     */
+    @Test
+    public void snapTakesDistinctJunctions() {
+        double[] x = new double[50], y = new double[50];
+        new TrackGenerator(7).placeLocations(x, y, 20, 1920, 1080);
+        int[] nodes = roads.snap(x, y);
+        int[] sorted = nodes.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) assertTrue(sorted[i] != sorted[i - 1]);
+        for (int i = 0; i < nodes.length; i++)
+            assertArrayEquals(new double[]{roads.getX(nodes[i]), roads.getY(nodes[i])}, new double[]{x[i], y[i]}, 0);
+    }
+
+    /**
+     * @return The length of the road between two junctions, -1 if there is none.
+     */
+    private static double road(int from, int to) {
+        for (int r = roads.getFirst(from); r < roads.getEnd(from); r++) if (roads.getTarget(r) == to) return roads.getWeight(r);
+        return -1;
+    }
+
+    /**
+     * @return The length of the shortest route from a junction to every other, by plain Dijkstra.
+     */
+    private static double[] dijkstra(int from) {
+        double[] cost = new double[roads.size()];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[from] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[]{0, from});
+        while (!queue.isEmpty()) {
+            double[] next = queue.poll();
+            int v = (int) next[1];
+            if (next[0] > cost[v]) continue;
+            for (int r = roads.getFirst(v); r < roads.getEnd(v); r++) {
+                int w = roads.getTarget(r);
+                double through = cost[v] + roads.getWeight(r);
+                if (through < cost[w]) {
+                    cost[w] = through;
+                    queue.add(new double[]{through, w});
+                }
+            }
+        }
+        return cost;
+    }
+
+}